@@ -12,6 +12,8 @@ import mcjty.rftools.blocks.blockprotector.BlockProtectors;
 import mcjty.rftools.blocks.endergen.EndergenicTileEntity;
 import mcjty.rftools.blocks.environmental.NoTeleportAreaManager;
 import mcjty.rftools.blocks.environmental.PeacefulAreaManager;
+import mcjty.rftools.blocks.logic.wireless.RedstoneChannels;
+import mcjty.rftools.blocks.powercell.PowerCellNetwork;
 import mcjty.rftools.blocks.screens.ScreenBlock;
 import mcjty.rftools.blocks.screens.ScreenHitBlock;
 import mcjty.rftools.blocks.screens.ScreenSetup;
@@ -34,7 +36,6 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.util.ResourceLocation;
 import net.minecraft.util.SoundEvent;
 import net.minecraft.util.datafix.FixTypes;
-import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.RayTraceResult;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
@@ -114,6 +115,10 @@ public class ForgeEventHandlers {
         if (event.phase == TickEvent.Phase.START && event.world.provider.getDimension() == 0) {
             performDelayedTeleports();
             ShapeDataManagerServer.handleWork();
+            PeacefulAreaManager.sweep();
+            NoTeleportAreaManager.sweep();
+            PowerCellNetwork.getChannels(event.world).commitTick();
+            RedstoneChannels.getChannels(event.world).updateReceivers();
         }
     }
 
@@ -254,14 +259,10 @@ public class ForgeEventHandlers {
         int id = world.provider.getDimension();
 
         Entity entity = event.getEntity();
-        BlockPos coordinate = new BlockPos((int) entity.posX, (int) entity.posY, (int) entity.posZ);
-        if (NoTeleportAreaManager.isTeleportPrevented(entity, new GlobalCoordinate(coordinate, id))) {
+        if (NoTeleportAreaManager.isTeleportPrevented(entity, id, (int) entity.posX, (int) entity.posY, (int) entity.posZ)) {
+            event.setCanceled(true);
+        } else if (NoTeleportAreaManager.isTeleportPrevented(entity, id, (int) event.getTargetX(), (int) event.getTargetY(), (int) event.getTargetZ())) {
             event.setCanceled(true);
-        } else {
-            coordinate = new BlockPos((int) event.getTargetX(), (int) event.getTargetY(), (int) event.getTargetZ());
-            if (NoTeleportAreaManager.isTeleportPrevented(entity, new GlobalCoordinate(coordinate, id))) {
-                event.setCanceled(true);
-            }
         }
     }
 
@@ -273,8 +274,7 @@ public class ForgeEventHandlers {
 
         Entity entity = event.getEntity();
         if (entity instanceof IMob) {
-            BlockPos coordinate = new BlockPos((int) entity.posX, (int) entity.posY, (int) entity.posZ);
-            if (PeacefulAreaManager.isPeaceful(new GlobalCoordinate(coordinate, id))) {
+            if (PeacefulAreaManager.isPeaceful(id, (int) entity.posX, (int) entity.posY, (int) entity.posZ)) {
                 event.setResult(Event.Result.DENY);
             }
         }
@@ -295,11 +295,7 @@ public class ForgeEventHandlers {
     @SubscribeEvent
     public void onPostWorldTick(TickEvent.WorldTickEvent event) {
         if (!event.world.isRemote) {
-            for (EndergenicTileEntity endergenic : EndergenicTileEntity.todoEndergenics) {
-                endergenic.checkStateServer();
-            }
-            EndergenicTileEntity.todoEndergenics.clear();
-            EndergenicTileEntity.endergenicsAdded.clear();
+            EndergenicTileEntity.processQueuedWork();
         }
     }
 
@@ -11,10 +11,13 @@ import mcjty.rftools.commands.CommandRftCfg;
 import mcjty.rftools.commands.CommandRftDb;
 import mcjty.rftools.commands.CommandRftShape;
 import mcjty.rftools.commands.CommandRftTp;
+import mcjty.rftools.craftinggrid.CraftingRecipe;
 import mcjty.rftools.integration.computers.OpenComputersIntegration;
 import mcjty.rftools.items.ModItems;
 import mcjty.rftools.items.manual.GuiRFToolsManual;
 import mcjty.rftools.proxy.CommonProxy;
+import mcjty.rftools.shapes.ScanDataManager;
+import mcjty.rftools.shapes.ShapeDataManagerServer;
 import mcjty.rftools.wheelsupport.WheelSupport;
 import mcjty.rftools.xnet.XNetSupport;
 import net.minecraft.creativetab.CreativeTabs;
@@ -181,6 +184,14 @@ public class RFTools implements ModBase {
         event.registerServerCommand(new CommandRftShape());
         event.registerServerCommand(new CommandRftDb());
         event.registerServerCommand(new CommandRftCfg());
+        // Recipes may have been changed by scripts or datapacks since the last server
+        CraftingRecipe.invalidateRecipeIndex();
+    }
+
+    @Mod.EventHandler
+    public void serverStopped(FMLServerStoppedEvent event) {
+        ShapeDataManagerServer.cancelAll();
+        ScanDataManager.waitForIO();
     }
 
     /**
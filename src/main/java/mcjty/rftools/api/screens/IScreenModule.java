@@ -56,4 +56,13 @@ public interface IScreenModule<T extends IModuleData> {
     default boolean needsController() {
         return false;
     }
+
+    /**
+     * How long (in milliseconds) the data returned by getData() can be reused before
+     * it has to be computed again. This data is shared between all players that are
+     * looking at the screen. Return -1 to use the default from the RFTools configuration.
+     */
+    default int getDataRefreshTiming() {
+        return -1;
+    }
 }
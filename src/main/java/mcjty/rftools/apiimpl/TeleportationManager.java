@@ -38,7 +38,7 @@ public class TeleportationManager implements ITeleportationManager {
         TeleportDestinations destinations = TeleportDestinations.getDestinations(world);
         GlobalCoordinate gc = new GlobalCoordinate(pos, world.provider.getDimension());
         TeleportDestination destination = destinations.addDestination(gc);
-        destination.setName(name);
+        destinations.setDestinationName(destination, name);
         destinations.save();
     }
 
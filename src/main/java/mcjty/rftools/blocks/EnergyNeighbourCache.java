@@ -0,0 +1,95 @@
+package mcjty.rftools.blocks;
+
+import mcjty.lib.varia.EnergyTools;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Remembers which adjacent tile entities can receive energy so that a block that sends out
+ * energy every tick doesn't have to look up and test its neighbours every tick. A cached
+ * receiver is used as long as it is not invalid and its chunk is still loaded (tile entities
+ * in an unloaded chunk are not invalidated and energy sent to them would be lost). A side
+ * is looked up again when invalidate() was called (from a neighbour change) or after
+ * RECHECK_TICKS so that new or replaced receivers are found.
+ */
+public class EnergyNeighbourCache {
+
+    private static final int RECHECK_TICKS = 20;
+
+    private final TileEntity owner;
+    private final TileEntity[] receivers = new TileEntity[6];
+    private final Chunk[] chunks = new Chunk[6];
+    private final long[] nextCheck = new long[6];
+    private BlockPos[] neighbours = null;
+
+    public EnergyNeighbourCache(TileEntity owner) {
+        this.owner = owner;
+    }
+
+    public void invalidate() {
+        Arrays.fill(receivers, null);
+        Arrays.fill(chunks, null);
+        Arrays.fill(nextCheck, 0);
+        neighbours = null;
+    }
+
+    private BlockPos getNeighbour(EnumFacing facing) {
+        if (neighbours == null) {
+            neighbours = new BlockPos[6];
+            for (EnumFacing f : EnumFacing.VALUES) {
+                neighbours[f.ordinal()] = owner.getPos().offset(f);
+            }
+        }
+        return neighbours[facing.ordinal()];
+    }
+
+    /**
+     * Return the tile entity on this side that accepts energy from this side or null if there is none
+     */
+    @Nullable
+    public TileEntity getReceiver(EnumFacing facing) {
+        int i = facing.ordinal();
+        World world = owner.getWorld();
+        long time = world.getTotalWorldTime();
+        if (time < nextCheck[i]) {
+            TileEntity te = receivers[i];
+            if (te == null) {
+                return null;
+            }
+            if (!te.isInvalid() && chunks[i].isLoaded()) {
+                return te;
+            }
+        }
+
+        nextCheck[i] = time + RECHECK_TICKS;
+        receivers[i] = null;
+        chunks[i] = null;
+        BlockPos pos = getNeighbour(facing);
+        if (!world.isBlockLoaded(pos)) {
+            return null;
+        }
+        TileEntity te = world.getTileEntity(pos);
+        if (EnergyTools.isEnergyTE(te, facing.getOpposite())) {
+            receivers[i] = te;
+            chunks[i] = world.getChunkFromBlockCoords(pos);
+        }
+        return receivers[i];
+    }
+
+    /**
+     * Give energy to the receiver on this side. Returns the amount that was accepted
+     */
+    public long sendEnergy(EnumFacing facing, long amount) {
+        TileEntity te = getReceiver(facing);
+        if (te == null) {
+            return 0;
+        }
+        return EnergyTools.receiveEnergy(te, facing.getOpposite(), amount);
+    }
+}
@@ -40,32 +40,37 @@ public class BlockProtectorEventHandlers {
             return;
         }
 
-        List<BlockPos> affectedBlocks = event.getAffectedBlocks();
-        List<BlockPos> toremove = new ArrayList<>();
-
+        List<BlockProtectorTileEntity> protectorTileEntities = new ArrayList<>(protectors.size());
         for (GlobalCoordinate protector : protectors) {
-            BlockPos pos = protector.getCoordinate();
-            TileEntity te = event.getWorld().getTileEntity(pos);
+            TileEntity te = event.getWorld().getTileEntity(protector.getCoordinate());
             if (te instanceof BlockProtectorTileEntity) {
-                BlockProtectorTileEntity blockProtectorTileEntity = (BlockProtectorTileEntity) te;
-                for (BlockPos block : affectedBlocks) {
-                    BlockPos relative = blockProtectorTileEntity.absoluteToRelative(block);
-                    boolean b = blockProtectorTileEntity.isProtected(relative);
-                    if (b) {
-                        Vec3d blockVector = new Vec3d(block);
-                        double distanceTo = explosionVector.distanceTo(blockVector);
-                        int rfneeded = blockProtectorTileEntity.attemptExplosionProtection((float) (distanceTo / explosion.size), explosion.size);
-                        if (rfneeded > 0) {
-                            toremove.add(block);
-                        } else {
-                            blockProtectorTileEntity.removeProtection(relative);
-                        }
-                    }
-                }
+                protectorTileEntities.add((BlockProtectorTileEntity) te);
             }
         }
+        if (protectorTileEntities.isEmpty()) {
+            return;
+        }
 
-        affectedBlocks.removeAll(toremove);
+        // Single pass over the affected blocks. removeIf on the list is linear
+        List<BlockPos> affectedBlocks = event.getAffectedBlocks();
+        affectedBlocks.removeIf(block -> isProtectedFromExplosion(block, protectorTileEntities, explosion, explosionVector));
+    }
+
+    // Return true if one of the protectors protects this block and has enough power to do so
+    private static boolean isProtectedFromExplosion(BlockPos block, List<BlockProtectorTileEntity> protectorTileEntities, Explosion explosion, Vec3d explosionVector) {
+        for (BlockProtectorTileEntity blockProtectorTileEntity : protectorTileEntities) {
+            BlockPos relative = blockProtectorTileEntity.absoluteToRelative(block);
+            if (blockProtectorTileEntity.isProtected(relative)) {
+                double distanceTo = explosionVector.distanceTo(new Vec3d(block));
+                int rfneeded = blockProtectorTileEntity.attemptExplosionProtection((float) (distanceTo / explosion.size), explosion.size);
+                if (rfneeded > 0) {
+                    return true;
+                } else {
+                    blockProtectorTileEntity.removeProtection(relative);
+                }
+            }
+        }
+        return false;
     }
 
     @SubscribeEvent
@@ -2,6 +2,7 @@ package mcjty.rftools.blocks.blockprotector;
 
 import mcjty.lib.varia.GlobalCoordinate;
 import mcjty.lib.worlddata.AbstractWorldData;
+import mcjty.rftools.varia.LongHashMap;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.tileentity.TileEntity;
@@ -20,6 +21,9 @@ public class BlockProtectors extends AbstractWorldData<BlockProtectors> {
     private final Map<GlobalCoordinate,Integer> protectorIdByCoordinate = new HashMap<>();
     private int lastId = 0;
 
+    // All protectors by dimension and chunk. Not saved, this is rebuilt from protectorIdByCoordinate
+    private final LongHashMap<List<GlobalCoordinate>> protectorsByChunk = new LongHashMap<>();
+
     public BlockProtectors(String name) {
         super(name);
     }
@@ -28,9 +32,35 @@ public class BlockProtectors extends AbstractWorldData<BlockProtectors> {
     public void clear() {
         protectorById.clear();
         protectorIdByCoordinate.clear();
+        protectorsByChunk.clear();
         lastId = 0;
     }
 
+    private void addToIndex(GlobalCoordinate key) {
+        BlockPos c = key.getCoordinate();
+        long chunk = LongHashMap.chunkKey(key.getDimension(), c.getX() >> 4, c.getZ() >> 4);
+        List<GlobalCoordinate> list = protectorsByChunk.get(chunk);
+        if (list == null) {
+            list = new ArrayList<>();
+            protectorsByChunk.put(chunk, list);
+        }
+        if (!list.contains(key)) {
+            list.add(key);
+        }
+    }
+
+    private void removeFromIndex(GlobalCoordinate key) {
+        BlockPos c = key.getCoordinate();
+        long chunk = LongHashMap.chunkKey(key.getDimension(), c.getX() >> 4, c.getZ() >> 4);
+        List<GlobalCoordinate> list = protectorsByChunk.get(chunk);
+        if (list != null) {
+            list.remove(key);
+            if (list.isEmpty()) {
+                protectorsByChunk.remove(chunk);
+            }
+        }
+    }
+
     public static Collection<GlobalCoordinate> getProtectors(World world, int x, int y, int z) {
         if (world.isRemote) {
             return Collections.emptyList();
@@ -67,6 +97,7 @@ public class BlockProtectors extends AbstractWorldData<BlockProtectors> {
     public void assignId(GlobalCoordinate key, int id) {
         protectorById.put(id, key);
         protectorIdByCoordinate.put(key, id);
+        addToIndex(key);
     }
 
     public int getNewId(GlobalCoordinate key) {
@@ -76,6 +107,7 @@ public class BlockProtectors extends AbstractWorldData<BlockProtectors> {
         lastId++;
         protectorById.put(lastId, key);
         protectorIdByCoordinate.put(key, lastId);
+        addToIndex(key);
         return lastId;
     }
 
@@ -94,27 +126,44 @@ public class BlockProtectors extends AbstractWorldData<BlockProtectors> {
         if (id != null) {
             protectorById.remove(id);
             protectorIdByCoordinate.remove(key);
+            removeFromIndex(key);
         }
     }
 
     public Collection<GlobalCoordinate> findProtectors(int x, int y, int z, int dimension, int radius) {
-        List<GlobalCoordinate> protectors = new ArrayList<>();
-        for (GlobalCoordinate coordinate : protectorIdByCoordinate.keySet()) {
-            if (coordinate.getDimension() == dimension) {
-                BlockPos c = coordinate.getCoordinate();
-                if (Math.abs(x-c.getX()) <= (16+radius+1) && Math.abs(y-c.getY()) <= (16+radius+1) && Math.abs(z-c.getZ()) <= (16+radius+1)) {
-                    protectors.add(coordinate);
+        if (protectorsByChunk.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // Only the chunks that can contain a protector in range have to be checked
+        int range = 16 + radius + 1;
+        List<GlobalCoordinate> protectors = null;
+        for (int cx = (x - range) >> 4 ; cx <= (x + range) >> 4 ; cx++) {
+            for (int cz = (z - range) >> 4 ; cz <= (z + range) >> 4 ; cz++) {
+                List<GlobalCoordinate> list = protectorsByChunk.get(LongHashMap.chunkKey(dimension, cx, cz));
+                if (list != null) {
+                    for (GlobalCoordinate coordinate : list) {
+                        if (coordinate.getDimension() == dimension) {
+                            BlockPos c = coordinate.getCoordinate();
+                            if (Math.abs(x-c.getX()) <= range && Math.abs(y-c.getY()) <= range && Math.abs(z-c.getZ()) <= range) {
+                                if (protectors == null) {
+                                    protectors = new ArrayList<>();
+                                }
+                                protectors.add(coordinate);
+                            }
+                        }
+                    }
                 }
             }
         }
 
-        return protectors;
+        return protectors == null ? Collections.emptyList() : protectors;
     }
 
     @Override
     public void readFromNBT(NBTTagCompound tagCompound) {
         protectorById.clear();
         protectorIdByCoordinate.clear();
+        protectorsByChunk.clear();
         lastId = tagCompound.getInteger("lastId");
         readDestinationsFromNBT(tagCompound);
     }
@@ -130,6 +179,7 @@ public class BlockProtectors extends AbstractWorldData<BlockProtectors> {
             int id = tc.getInteger("id");
             protectorById.put(id, gc);
             protectorIdByCoordinate.put(gc, id);
+            addToIndex(gc);
         }
     }
 
@@ -27,6 +27,7 @@ import mcjty.rftools.network.PacketGetHudLog;
 import mcjty.rftools.network.RFToolsMessages;
 import mcjty.rftools.proxy.CommonProxy;
 import mcjty.rftools.shapes.Shape;
+import mcjty.rftools.varia.PositionMap;
 import mcjty.theoneprobe.api.IProbeHitData;
 import mcjty.theoneprobe.api.IProbeInfo;
 import mcjty.theoneprobe.api.ProbeMode;
@@ -174,7 +175,7 @@ public class BuilderTileEntity extends GenericEnergyReceiverTileEntity implement
     private ChunkPos forcedChunk = null;
 
     // Cached set of blocks that we need to build in shaped mode
-    private Map<BlockPos, IBlockState> cachedBlocks = null;
+    private ShapeChunk cachedBlocks = null;
     private ChunkPos cachedChunk = null;       // For which chunk are the cachedBlocks valid
 
     // Cached set of blocks that we want to void with the quarry.
@@ -324,14 +325,15 @@ public class BuilderTileEntity extends GenericEnergyReceiverTileEntity implement
         BlockPos dimension = ShapeCardItem.getClampedDimension(shapeCard, BuilderConfiguration.maxBuilderDimension);
         BlockPos offset = ShapeCardItem.getClampedOffset(shapeCard, BuilderConfiguration.maxBuilderOffset);
         Shape shape = ShapeCardItem.getShape(shapeCard);
-        Map<BlockPos, IBlockState> blocks = new HashMap<>();
+        PositionMap blocks = new PositionMap();
         ShapeCardItem.composeFormula(shapeCard, shape.getFormulaFactory().get(), getWorld(), getPos(), dimension, offset, blocks, BuilderConfiguration.maxBuilderDimension * 256 * BuilderConfiguration.maxBuilderDimension, false, false, null);
-        for (Map.Entry<BlockPos, IBlockState> entry : blocks.entrySet()) {
-            BlockPos p = entry.getKey();
+        IBlockState support = BuilderSetup.supportBlock.getDefaultState().withProperty(SupportBlock.STATUS, SupportBlock.STATUS_OK);
+        blocks.forEach((x, y, z, value) -> {
+            BlockPos p = getPos().add(x, y, z);
             if (getWorld().isAirBlock(p)) {
-                getWorld().setBlockState(p, BuilderSetup.supportBlock.getDefaultState().withProperty(SupportBlock.STATUS, SupportBlock.STATUS_OK), 3);
+                getWorld().setBlockState(p, support, 3);
             }
-        }
+        });
     }
 
     private void makeSupportBlocks() {
@@ -385,14 +387,15 @@ public class BuilderTileEntity extends GenericEnergyReceiverTileEntity implement
         BlockPos dimension = ShapeCardItem.getClampedDimension(shapeCard, BuilderConfiguration.maxBuilderDimension);
         BlockPos offset = ShapeCardItem.getClampedOffset(shapeCard, BuilderConfiguration.maxBuilderOffset);
         Shape shape = ShapeCardItem.getShape(shapeCard);
-        Map<BlockPos, IBlockState> blocks = new HashMap<>();
+        PositionMap blocks = new PositionMap();
         ShapeCardItem.composeFormula(shapeCard, shape.getFormulaFactory().get(), getWorld(), getPos(), dimension, offset, blocks, BuilderConfiguration.maxSpaceChamberDimension * BuilderConfiguration.maxSpaceChamberDimension * BuilderConfiguration.maxSpaceChamberDimension, false, false, null);
-        for (Map.Entry<BlockPos, IBlockState> entry : blocks.entrySet()) {
-            BlockPos block = entry.getKey();
+        BlockPos.MutableBlockPos block = new BlockPos.MutableBlockPos();
+        blocks.forEach((x, y, z, value) -> {
+            block.setPos(getPos().getX() + x, getPos().getY() + y, getPos().getZ() + z);
             if (getWorld().getBlockState(block).getBlock() == BuilderSetup.supportBlock) {
-                getWorld().setBlockToAir(block);
+                getWorld().setBlockToAir(block.toImmutable());
             }
-        }
+        });
     }
 
     public void clearSupportBlocks() {
@@ -946,13 +949,13 @@ public class BuilderTileEntity extends GenericEnergyReceiverTileEntity implement
         return chamberChannel;
     }
 
-    private Map<BlockPos, IBlockState> getCachedBlocks(ChunkPos chunk) {
-        if ((chunk != null && !chunk.equals(cachedChunk)) || (chunk == null && cachedChunk != null)) {
+    private ShapeChunk getCachedBlocks(ChunkPos chunk) {
+        if (!chunk.equals(cachedChunk)) {
             cachedBlocks = null;
         }
 
         if (cachedBlocks == null) {
-            cachedBlocks = new HashMap<>();
+            cachedBlocks = new ShapeChunk(chunk, minBox.getY(), maxBox.getY());
             ItemStack shapeCard = inventoryHelper.getStackInSlot(SLOT_TAB);
             Shape shape = ShapeCardItem.getShape(shapeCard);
             boolean solid = ShapeCardItem.isSolid(shapeCard);
@@ -970,14 +973,22 @@ public class BuilderTileEntity extends GenericEnergyReceiverTileEntity implement
             if (scan == null) {
                 return;
             }
-            Map<BlockPos, IBlockState> blocks = getCachedBlocks(new ChunkPos(scan.getX() >> 4, scan.getZ() >> 4));
-            if (blocks.containsKey(scan)) {
-                IBlockState state = blocks.get(scan);
+            ChunkPos chunk = new ChunkPos(scan.getX() >> 4, scan.getZ() >> 4);
+            ShapeChunk blocks = getCachedBlocks(chunk);
+            int index = blocks.nextIndex(scan);
+            if (index != -1) {
+                scan = blocks.getPos(index);
+                IBlockState state = blocks.getState(index);
                 if (!handleSingleBlock(state)) {
                     nextLocation();
                 }
                 return;
             } else {
+                // Nothing left to do in this chunk. Go to the last position of the chunk
+                // so that nextLocation() moves on to the next chunk
+                int x = Math.min((chunk.x << 4) + 15, maxBox.getX());
+                int z = Math.min((chunk.z << 4) + 15, maxBox.getZ());
+                scan = new BlockPos(x, minBox.getY(), z);
                 nextLocation();
             }
         }
@@ -0,0 +1,94 @@
+package mcjty.rftools.blocks.builder;
+
+import mcjty.rftools.shapes.IBlockCollector;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.*;
+
+/**
+ * The positions of a shape that fall inside a single chunk. The positions are kept in
+ * a BitSet that is indexed in the same order as the builder visits them (from top to
+ * bottom, then z, then x) so that the builder can jump straight to the next position
+ * it has to handle. Block states are kept in a palette.
+ */
+class ShapeChunk implements IBlockCollector {
+
+    private final ChunkPos chunk;
+    private final int minY;
+    private final int maxY;
+
+    private final BitSet positions = new BitSet();
+    private int count = 0;
+
+    // Palette index 0 is reserved for the null state. The array is only
+    // allocated when there is at least one real state
+    private final List<IBlockState> palette = new ArrayList<>();
+    private final Map<IBlockState, Integer> paletteIndex = new HashMap<>();
+    private short[] states = null;
+
+    public ShapeChunk(ChunkPos chunk, int minY, int maxY) {
+        this.chunk = chunk;
+        this.minY = minY;
+        this.maxY = maxY;
+        palette.add(null);
+    }
+
+    private int index(int x, int y, int z) {
+        return (((maxY - y) << 4) + (z & 15)) << 4 | (x & 15);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void add(int x, int y, int z, IBlockState state) {
+        if (y < minY || y > maxY || (x >> 4) != chunk.x || (z >> 4) != chunk.z) {
+            return;
+        }
+        int idx = index(x, y, z);
+        if (!positions.get(idx)) {
+            positions.set(idx);
+            count++;
+        }
+        if (state != null) {
+            if (states == null) {
+                states = new short[(maxY - minY + 1) << 8];
+            }
+            states[idx] = (short) (int) paletteIndex.computeIfAbsent(state, s -> {
+                palette.add(s);
+                return palette.size() - 1;
+            });
+        } else if (states != null) {
+            states[idx] = 0;
+        }
+    }
+
+    /**
+     * Return the index of the first position at or after the given position
+     * in scan order or -1 if there are no more positions in this chunk.
+     */
+    public int nextIndex(BlockPos pos) {
+        if (pos.getY() > maxY || pos.getY() < minY) {
+            return -1;
+        }
+        return positions.nextSetBit(index(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public BlockPos getPos(int index) {
+        int x = (chunk.x << 4) | (index & 15);
+        int z = (chunk.z << 4) | ((index >> 4) & 15);
+        int y = maxY - (index >> 8);
+        return new BlockPos(x, y, z);
+    }
+
+    public IBlockState getState(int index) {
+        if (states == null) {
+            return null;
+        }
+        return palette.get(states[index]);
+    }
+}
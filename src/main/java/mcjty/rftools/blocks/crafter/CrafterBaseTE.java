@@ -17,6 +17,7 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.inventory.Container;
 import net.minecraft.inventory.InventoryCrafting;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.crafting.IRecipe;
 import net.minecraft.nbt.NBTTagCompound;
@@ -32,6 +33,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static mcjty.rftools.craftinggrid.CraftingRecipe.CraftMode.EXT;
 import static mcjty.rftools.craftinggrid.CraftingRecipe.CraftMode.EXTC;
 import static mcjty.rftools.craftinggrid.CraftingRecipe.CraftMode.INT;
 
@@ -61,6 +63,24 @@ public class CrafterBaseTE extends GenericEnergyReceiverTileEntity implements IT
     // any of its inventories or recipes change.
     /*package*/ boolean noRecipesWork = false;
 
+    // Histogram of the buffer: for every distinct item (damage and NBT are ignored) the total
+    // count and the number of slots that contain it. Rebuilt when the buffer changes
+    private final Item[] histogramItems = new Item[CrafterContainer.BUFFER_SIZE];
+    private final int[] histogramTotal = new int[CrafterContainer.BUFFER_SIZE];
+    private final int[] histogramSlots = new int[CrafterContainer.BUFFER_SIZE];
+    private int histogramSize = 0;
+    private boolean histogramDirty = true;
+
+    // For every recipe the maximum number of times it can be crafted with the buffer
+    // as it was when the plan was made. Recipes that are planned 0 times are not tried
+    private final int[] plannedCrafts;
+
+    // Scratch arrays used while planning a recipe
+    private final Item[] neededItems = new Item[9];
+    private final int[] neededCounts = new int[9];
+
+    private final Map<Integer,ItemStack> undo = new HashMap<>();
+
     private InventoryCrafting workInventory = new InventoryCrafting(new Container() {
         @SuppressWarnings("NullableProblems")
         @Override
@@ -72,6 +92,7 @@ public class CrafterBaseTE extends GenericEnergyReceiverTileEntity implements IT
     public CrafterBaseTE(int supportedRecipes) {
         super(CrafterConfiguration.MAXENERGY, CrafterConfiguration.RECEIVEPERTICK);
         recipes = new CraftingRecipe[supportedRecipes];
+        plannedCrafts = new int[supportedRecipes];
         for (int i = 0; i < recipes.length; ++i) {
             recipes[i] = new CraftingRecipe();
         }
@@ -134,6 +155,7 @@ public class CrafterBaseTE extends GenericEnergyReceiverTileEntity implements IT
     @Override
     public void setInventorySlotContents(int index, ItemStack stack) {
         noRecipesWork = false;
+        histogramDirty = true;
         if (index == CrafterContainer.SLOT_FILTER_MODULE) {
             filterCache = null;
         }
@@ -143,6 +165,7 @@ public class CrafterBaseTE extends GenericEnergyReceiverTileEntity implements IT
     @Override
     public ItemStack decrStackSize(int index, int count) {
         noRecipesWork = false;
+        histogramDirty = true;
         if (index == CrafterContainer.SLOT_FILTER_MODULE) {
             filterCache = null;
         }
@@ -152,12 +175,20 @@ public class CrafterBaseTE extends GenericEnergyReceiverTileEntity implements IT
     @Override
     public ItemStack removeStackFromSlot(int index) {
         noRecipesWork = false;
+        histogramDirty = true;
         if (index == CrafterContainer.SLOT_FILTER_MODULE) {
             filterCache = null;
         }
         return inventoryHelper.removeStackFromSlot(index);
     }
 
+    @Override
+    public void markDirty() {
+        // Also called by container slots that modified a stack directly
+        histogramDirty = true;
+        super.markDirty();
+    }
+
     @Override
     public boolean isEmpty() {
         return false;
@@ -314,24 +345,112 @@ public class CrafterBaseTE extends GenericEnergyReceiverTileEntity implements IT
     }
 
     private boolean craftOneCycle() {
+        if (histogramDirty) {
+            planCrafts();
+        }
+
         boolean craftedAtLeastOneThing = false;
 
-        for (CraftingRecipe craftingRecipe : recipes) {
-            if (craftOneItemNew(craftingRecipe)) {
-                craftedAtLeastOneThing = true;
+        for (int r = 0 ; r < recipes.length ; r++) {
+            if (plannedCrafts[r] > 0) {
+                if (craftOneItemNew(recipes[r])) {
+                    craftedAtLeastOneThing = true;
+                    plannedCrafts[r]--;
+                    if (recipes[r].getCraftMode() != EXT) {
+                        // Results (or container items) went to the buffer so other recipes may be possible now
+                        histogramDirty = true;
+                    }
+                } else {
+                    plannedCrafts[r] = 0;
+                }
             }
         }
 
         return craftedAtLeastOneThing;
     }
 
+    private void updateHistogram() {
+        histogramSize = 0;
+        for (int j = 0 ; j < CrafterContainer.BUFFER_SIZE ; j++) {
+            ItemStack input = inventoryHelper.getStackInSlot(CrafterContainer.SLOT_BUFFER + j);
+            if (!input.isEmpty()) {
+                int idx = findItem(histogramItems, histogramSize, input.getItem());
+                if (idx == -1) {
+                    idx = histogramSize++;
+                    histogramItems[idx] = input.getItem();
+                    histogramTotal[idx] = 0;
+                    histogramSlots[idx] = 0;
+                }
+                histogramTotal[idx] += input.getCount();
+                histogramSlots[idx]++;
+            }
+        }
+        histogramDirty = false;
+    }
+
+    private static int findItem(Item[] items, int size, Item item) {
+        for (int i = 0 ; i < size ; i++) {
+            if (items[i] == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decide for all recipes how many times they can be crafted with the current buffer.
+     * Items are only compared by item (like the loose matching mode) so this is an upper
+     * bound: the actual crafting still does the exact test.
+     */
+    private void planCrafts() {
+        updateHistogram();
+        for (int r = 0 ; r < recipes.length ; r++) {
+            plannedCrafts[r] = calculatePossibleCrafts(recipes[r]);
+        }
+    }
+
+    private int calculatePossibleCrafts(CraftingRecipe craftingRecipe) {
+        if (craftingRecipe.getCachedRecipe(getWorld()) == null) {
+            return 0;
+        }
+        int keep = craftingRecipe.isKeepOne() ? 1 : 0;
+        InventoryCrafting inventory = craftingRecipe.getInventory();
+        int needed = 0;
+        for (int i = 0 ; i < inventory.getSizeInventory() ; i++) {
+            ItemStack stack = inventory.getStackInSlot(i);
+            if (!stack.isEmpty()) {
+                int idx = findItem(neededItems, needed, stack.getItem());
+                if (idx == -1) {
+                    idx = needed++;
+                    neededItems[idx] = stack.getItem();
+                    neededCounts[idx] = 0;
+                }
+                neededCounts[idx] += stack.getCount();
+            }
+        }
+
+        int possible = needed == 0 ? 0 : Integer.MAX_VALUE;
+        for (int k = 0 ; k < needed ; k++) {
+            int idx = findItem(histogramItems, histogramSize, neededItems[k]);
+            if (idx == -1) {
+                possible = 0;
+            } else {
+                // Every slot keeps 'keep' items
+                int available = histogramTotal[idx] - keep * histogramSlots[idx];
+                possible = Math.min(possible, available / neededCounts[k]);
+            }
+            neededItems[k] = null;
+        }
+        return possible;
+    }
+
     private boolean craftOneItemNew(CraftingRecipe craftingRecipe) {
         IRecipe recipe = craftingRecipe.getCachedRecipe(getWorld());
         if (recipe == null) {
             return false;
         }
 
-        Map<Integer,ItemStack> undo = new HashMap<>();
+        undo.clear();
 
         if (!testAndConsumeCraftingItems(craftingRecipe, undo, true)) {
             undo(undo);
@@ -0,0 +1,216 @@
+package mcjty.rftools.blocks.elevator;
+
+import mcjty.lib.worlddata.AbstractWorldData;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.common.util.Constants;
+
+import java.util.*;
+
+/**
+ * All elevator shafts. A shaft is a column of elevator blocks with the same x, z and
+ * orientation. For every shaft we keep the sorted heights of the elevators and the height
+ * of the elevator that has the platform so that elevators and screen modules don't have
+ * to scan the whole column. Shafts are updated when an elevator is placed, broken or
+ * rotated. ElevatorTileEntity checks the stored heights against the world when it reads a
+ * shaft and builds the shaft again if it is not known yet (old worlds) or doesn't match.
+ */
+public class ElevatorShafts extends AbstractWorldData<ElevatorShafts> {
+
+    private static final String ELEVATOR_SHAFTS_NAME = "RFToolsElevatorShafts";
+
+    private final Map<ShaftKey, Shaft> shafts = new HashMap<>();
+
+    public ElevatorShafts(String name) {
+        super(name);
+    }
+
+    @Override
+    public void clear() {
+        shafts.clear();
+    }
+
+    public static ElevatorShafts getShafts(World world) {
+        return getData(world, ElevatorShafts.class, ELEVATOR_SHAFTS_NAME);
+    }
+
+    public Shaft getShaft(int dimension, BlockPos pos, EnumFacing facing) {
+        return shafts.get(new ShaftKey(dimension, pos, facing));
+    }
+
+    public Shaft setShaft(int dimension, BlockPos pos, EnumFacing facing, List<Integer> heights) {
+        ShaftKey key = new ShaftKey(dimension, pos, facing);
+        Shaft shaft = new Shaft();
+        for (Integer y : heights) {
+            shaft.add(y);
+        }
+        if (shaft.getLevelCount() == 0) {
+            shafts.remove(key);
+        } else {
+            shafts.put(key, shaft);
+        }
+        save();
+        return shaft;
+    }
+
+    // Nothing happens if the shaft is not known yet. It will be built completely on first use
+    public void addElevator(int dimension, BlockPos pos, EnumFacing facing) {
+        Shaft shaft = getShaft(dimension, pos, facing);
+        if (shaft != null && shaft.add(pos.getY())) {
+            save();
+        }
+    }
+
+    public void removeElevator(int dimension, BlockPos pos, EnumFacing facing) {
+        ShaftKey key = new ShaftKey(dimension, pos, facing);
+        Shaft shaft = shafts.get(key);
+        if (shaft != null && shaft.remove(pos.getY())) {
+            if (shaft.getLevelCount() == 0) {
+                shafts.remove(key);
+            }
+            save();
+        }
+    }
+
+    public void setPlatform(int dimension, BlockPos pos, EnumFacing facing, int y) {
+        Shaft shaft = getShaft(dimension, pos, facing);
+        if (shaft != null && shaft.platform != y) {
+            shaft.platform = y;
+            save();
+        }
+    }
+
+    @Override
+    public void readFromNBT(NBTTagCompound tagCompound) {
+        shafts.clear();
+        NBTTagList lst = tagCompound.getTagList("shafts", Constants.NBT.TAG_COMPOUND);
+        for (int i = 0 ; i < lst.tagCount() ; i++) {
+            NBTTagCompound tc = lst.getCompoundTagAt(i);
+            ShaftKey key = new ShaftKey(tc.getInteger("dim"), tc.getInteger("x"), tc.getInteger("z"), tc.getInteger("facing"));
+            Shaft shaft = new Shaft();
+            for (int y : tc.getIntArray("levels")) {
+                shaft.add(y);
+            }
+            shaft.platform = tc.getInteger("platform");
+            if (shaft.getLevelCount() > 0) {
+                shafts.put(key, shaft);
+            }
+        }
+    }
+
+    @Override
+    public NBTTagCompound writeToNBT(NBTTagCompound tagCompound) {
+        NBTTagList lst = new NBTTagList();
+        for (Map.Entry<ShaftKey, Shaft> entry : shafts.entrySet()) {
+            ShaftKey key = entry.getKey();
+            Shaft shaft = entry.getValue();
+            NBTTagCompound tc = new NBTTagCompound();
+            tc.setInteger("dim", key.dimension);
+            tc.setInteger("x", key.x);
+            tc.setInteger("z", key.z);
+            tc.setInteger("facing", key.facing);
+            int[] levels = new int[shaft.levels.size()];
+            for (int i = 0 ; i < levels.length ; i++) {
+                levels[i] = shaft.levels.get(i);
+            }
+            tc.setIntArray("levels", levels);
+            tc.setInteger("platform", shaft.platform);
+            lst.appendTag(tc);
+        }
+        tagCompound.setTag("shafts", lst);
+        return tagCompound;
+    }
+
+    public static class Shaft {
+        private final List<Integer> levels = new ArrayList<>();     // Sorted heights of the elevators
+        private int platform = -1;                                  // Height of the elevator with the platform or -1 if not known
+
+        public int getLevelCount() {
+            return levels.size();
+        }
+
+        // Height of a level (levels start at 0)
+        public int getHeight(int level) {
+            return levels.get(level);
+        }
+
+        // Level at this height or -1 if there is no elevator at this height
+        public int getLevel(int y) {
+            int idx = Collections.binarySearch(levels, y);
+            return idx < 0 ? -1 : idx;
+        }
+
+        public boolean contains(int y) {
+            return getLevel(y) != -1;
+        }
+
+        public List<Integer> getHeights() {
+            return Collections.unmodifiableList(levels);
+        }
+
+        public int getPlatform() {
+            return platform;
+        }
+
+        // Returns true if the shaft changed
+        private boolean add(int y) {
+            int idx = Collections.binarySearch(levels, y);
+            if (idx < 0) {
+                levels.add(-idx - 1, y);
+                return true;
+            }
+            return false;
+        }
+
+        // Returns true if the shaft changed
+        private boolean remove(int y) {
+            int idx = Collections.binarySearch(levels, y);
+            if (idx < 0) {
+                return false;
+            }
+            levels.remove(idx);
+            if (platform == y) {
+                platform = -1;
+            }
+            return true;
+        }
+    }
+
+    private static class ShaftKey {
+        private final int dimension;
+        private final int x;
+        private final int z;
+        private final int facing;
+
+        public ShaftKey(int dimension, BlockPos pos, EnumFacing facing) {
+            this(dimension, pos.getX(), pos.getZ(), facing.ordinal());
+        }
+
+        public ShaftKey(int dimension, int x, int z, int facing) {
+            this.dimension = dimension;
+            this.x = x;
+            this.z = z;
+            this.facing = facing;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ShaftKey shaftKey = (ShaftKey) o;
+            return dimension == shaftKey.dimension && x == shaftKey.x && z == shaftKey.z && facing == shaftKey.facing;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((dimension * 31 + x) * 31 + z) * 31 + facing;
+        }
+    }
+}
@@ -45,6 +45,8 @@ import net.minecraftforge.fml.common.Optional;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -71,12 +73,12 @@ public class ElevatorTileEntity extends GenericEnergyReceiverTileEntity implemen
     private IBlockState movingState;
 
     // Cache: points to the current controller (bottom elevator block)
-    private BlockPos cachedControllerPos;
-    private int cachedLevels;       // Cached number of levels
-    private int cachedCurrent = -1;
 
     private boolean redstoneOut = false;
 
+    // The orientation with which this elevator was last put in a shaft (not saved)
+    private EnumFacing registeredSide = null;
+
     // All entities currently on the platform (server side only)
     private Set<Entity> entitiesOnPlatform = new HashSet<>();
     private boolean entitiesOnPlatformComplete = false; // If true then we know entitiesOnPlatform is complete, otherwise it only contains players.
@@ -97,22 +99,62 @@ public class ElevatorTileEntity extends GenericEnergyReceiverTileEntity implemen
     }
 
 
-    public void clearCaches(EnumFacing side) {
-        for (int y = 0 ; y < getWorld().getHeight() ; y++) {
-            BlockPos pos2 = getPosAtY(getPos(), y);
-            if (getWorld().getBlockState(pos2).getBlock() == ElevatorSetup.elevatorBlock) {
-                TileEntity te = getWorld().getTileEntity(pos2);
-                if (te instanceof ElevatorTileEntity) {
-                    EnumFacing side2 = getWorld().getBlockState(pos2).getValue(FACING_HORIZ);
-                    if (side2 == side) {
-                        ElevatorTileEntity tileEntity = (ElevatorTileEntity) te;
-                        tileEntity.cachedControllerPos = null;
-                        tileEntity.cachedLevels = 0;
-                        tileEntity.cachedCurrent = -1;
-                    }
+    // The orientation of this elevator or null if this is not an elevator block (anymore)
+    private EnumFacing getSide() {
+        IBlockState blockState = getWorld().getBlockState(getPos());
+        if (blockState.getBlock() != ElevatorSetup.elevatorBlock) {
+            return null;
+        }
+        return blockState.getValue(FACING_HORIZ);
+    }
+
+    private int getDimension() {
+        return getWorld().provider.getDimension();
+    }
+
+    // The shaft this elevator is part of. It is rebuilt if it is not known yet or if it
+    // doesn't match the world (blocks changed without onBlockPlacedBy/onBlockBreak)
+    private ElevatorShafts.Shaft getShaft(EnumFacing side) {
+        ElevatorShafts shafts = ElevatorShafts.getShafts(getWorld());
+        ElevatorShafts.Shaft shaft = shafts.getShaft(getDimension(), getPos(), side);
+        if (shaft == null || !shaft.contains(getPos().getY()) || !isShaftValid(shaft, side)) {
+            List<Integer> heights = new ArrayList<>();
+            for (int y = 0 ; y < getWorld().getHeight() ; y++) {
+                IBlockState otherState = getWorld().getBlockState(getPosAtY(getPos(), y));
+                if (otherState.getBlock() == ElevatorSetup.elevatorBlock && otherState.getValue(FACING_HORIZ) == side) {
+                    heights.add(y);
                 }
             }
+            shaft = shafts.setShaft(getDimension(), getPos(), side, heights);
         }
+        return shaft;
+    }
+
+    private boolean isShaftValid(ElevatorShafts.Shaft shaft, EnumFacing side) {
+        for (Integer y : shaft.getHeights()) {
+            IBlockState otherState = getWorld().getBlockState(getPosAtY(getPos(), y));
+            if (otherState.getBlock() != ElevatorSetup.elevatorBlock || otherState.getValue(FACING_HORIZ) != side) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Make sure this elevator is in the shaft for its current orientation. This catches
+    // elevators that were placed by the builder or rotated with a wrench
+    private void checkRegistration() {
+        EnumFacing side = getSide();
+        if (side == registeredSide) {
+            return;
+        }
+        ElevatorShafts shafts = ElevatorShafts.getShafts(getWorld());
+        if (registeredSide != null) {
+            shafts.removeElevator(getDimension(), getPos(), registeredSide);
+        }
+        if (side != null) {
+            shafts.addElevator(getDimension(), getPos(), side);
+        }
+        registeredSide = side;
     }
 
     public String getName() {
@@ -133,6 +175,8 @@ public class ElevatorTileEntity extends GenericEnergyReceiverTileEntity implemen
     @Override
     public void update() {
         if (!getWorld().isRemote) {
+            checkRegistration();
+
             boolean newout = isPlatformHere();
             if (newout != redstoneOut) {
                 redstoneOut = newout;
@@ -329,47 +373,35 @@ public class ElevatorTileEntity extends GenericEnergyReceiverTileEntity implemen
 
     // Find the position of the bottom elevator.
     public BlockPos findBottomElevator() {
-        if (cachedControllerPos != null) {
-            return cachedControllerPos;
+        EnumFacing side = getSide();
+        if (side == null) {
+            return null;
         }
+        return getPosAtY(getPos(), getShaft(side).getHeight(0));
+    }
 
-        // The orientation of this elevator.
-        IBlockState blockState = getWorld().getBlockState(getPos());
-        if (blockState.getBlock() != ElevatorSetup.elevatorBlock) {
+    // Find the position of the elevator that has the platform.
+    private BlockPos findElevatorWithPlatform() {
+        EnumFacing side = getSide();
+        if (side == null) {
             return null;
         }
-        EnumFacing side = blockState.getValue(FACING_HORIZ);
+        ElevatorShafts.Shaft shaft = getShaft(side);
 
-        for (int y = 0; y < getWorld().getHeight(); y++) {
-            BlockPos elevatorPos = getPosAtY(getPos(), y);
-            IBlockState otherState = getWorld().getBlockState(elevatorPos);
-            if (otherState.getBlock() == ElevatorSetup.elevatorBlock) {
-                EnumFacing otherSide = otherState.getValue(FACING_HORIZ);
-                if (otherSide == side) {
-                    cachedControllerPos = elevatorPos;
-                    return elevatorPos;
-                }
+        // First test the level where the platform was last seen
+        int platform = shaft.getPlatform();
+        if (platform != -1 && shaft.contains(platform)) {
+            BlockPos elevatorPos = getPosAtY(getPos(), platform);
+            if (isValidPlatformBlock(elevatorPos.offset(side))) {
+                return elevatorPos;
             }
         }
-        return null;
-    }
 
-    // Find the position of the elevator that has the platform.
-    private BlockPos findElevatorWithPlatform() {
-        // The orientation of this elevator.
-        EnumFacing side = getWorld().getBlockState(getPos()).getValue(FACING_HORIZ);
-
-        for (int y = 0; y < getWorld().getHeight(); y++) {
+        for (Integer y : shaft.getHeights()) {
             BlockPos elevatorPos = getPosAtY(getPos(), y);
-            IBlockState otherState = getWorld().getBlockState(elevatorPos);
-            if (otherState.getBlock() == ElevatorSetup.elevatorBlock) {
-                EnumFacing otherSide = otherState.getValue(FACING_HORIZ);
-                if (otherSide == side) {
-                    BlockPos frontPos = elevatorPos.offset(side);
-                    if (isValidPlatformBlock(frontPos)) {
-                        return elevatorPos;
-                    }
-                }
+            if (isValidPlatformBlock(elevatorPos.offset(side))) {
+                ElevatorShafts.getShafts(getWorld()).setPlatform(getDimension(), getPos(), side, y);
+                return elevatorPos;
             }
         }
         return null;
@@ -397,8 +429,10 @@ public class ElevatorTileEntity extends GenericEnergyReceiverTileEntity implemen
                 getWorld().setBlockState(getPosAtY(pos, stopY), movingState, 3);
             }
         }
-        // Current level will have to be recalculated
-        cachedCurrent = -1;
+        EnumFacing side = getSide();
+        if (side != null) {
+            ElevatorShafts.getShafts(getWorld()).setPlatform(getDimension(), getPos(), side, stopY);
+        }
         markDirtyClient();
     }
 
@@ -554,70 +588,37 @@ public class ElevatorTileEntity extends GenericEnergyReceiverTileEntity implemen
 
     // Go to the specific level (levels start at 0)
     public void toLevel(int level) {
-        EnumFacing side = getWorld().getBlockState(getPos()).getValue(FACING_HORIZ);
-        BlockPos controllerPos = findBottomElevator();
-        for (int y = controllerPos.getY() ; y < getWorld().getHeight() ; y++) {
-            BlockPos pos2 = getPosAtY(controllerPos, y);
-            if (getWorld().getBlockState(pos2).getBlock() == ElevatorSetup.elevatorBlock) {
-                TileEntity te2 = getWorld().getTileEntity(pos2);
-                if (te2 instanceof ElevatorTileEntity) {
-                    EnumFacing side2 = getWorld().getBlockState(pos2).getValue(FACING_HORIZ);
-                    if (side == side2) {
-                        if (level == 0) {
-                            ((ElevatorTileEntity) te2).movePlatformHere();
-                            return;
-                        }
-                        level--;
-                    }
-                }
-            }
+        EnumFacing side = getSide();
+        if (side == null) {
+            return;
+        }
+        ElevatorShafts.Shaft shaft = getShaft(side);
+        if (level < 0 || level >= shaft.getLevelCount()) {
+            return;
+        }
+        TileEntity te2 = getWorld().getTileEntity(getPosAtY(getPos(), shaft.getHeight(level)));
+        if (te2 instanceof ElevatorTileEntity) {
+            ((ElevatorTileEntity) te2).movePlatformHere();
         }
     }
 
     public void findElevatorBlocks(List<Integer> heights) {
-        BlockPos controllerPos = findBottomElevator();
-        if (controllerPos == null) {
-            // Cannot happen
-            return;
-        }
-        IBlockState blockState = getWorld().getBlockState(getPos());
-        if (blockState.getBlock() != ElevatorSetup.elevatorBlock) {
+        EnumFacing side = getSide();
+        if (side == null) {
             return;
         }
-        EnumFacing side = blockState.getValue(FACING_HORIZ);
-        for (int y = controllerPos.getY() ; y < getWorld().getHeight() ; y++) {
-            BlockPos pos2 = getPosAtY(controllerPos, y);
-            TileEntity te2 = getWorld().getTileEntity(pos2);
-            if (te2 instanceof ElevatorTileEntity) {
-                EnumFacing side2 = getWorld().getBlockState(pos2).getValue(FACING_HORIZ);
-                if (side == side2) {
-                    heights.add(y);
-                }
-            }
-        }
+        heights.addAll(getShaft(side).getHeights());
     }
 
 
+    // The level that has the platform or -1 if there is no platform
     public int getCurrentLevel(List<Integer> heights) {
-        BlockPos controllerPos = findBottomElevator();
-        TileEntity te = getWorld().getTileEntity(controllerPos);
-        if (te instanceof ElevatorTileEntity) {
-            EnumFacing side = getWorld().getBlockState(controllerPos).getValue(FACING_HORIZ);
-            ElevatorTileEntity controller = (ElevatorTileEntity) te;
-            if (controller.cachedCurrent == -1) {
-                int level = 0;
-                for (Integer y : heights) {
-                    BlockPos pos2 = getPosAtY(controllerPos, y);
-                    BlockPos frontPos = pos2.offset(side);
-                    if (isValidPlatformBlock(frontPos)) {
-                        controller.cachedCurrent = level;
-                    }
-                    level++;
-                }
-            }
-            return controller.cachedCurrent;
+        BlockPos platformPos = findElevatorWithPlatform();
+        if (platformPos == null) {
+            return -1;
         }
-        return 0;
+        int level = Collections.binarySearch(heights, platformPos.getY());
+        return level < 0 ? -1 : level;
     }
 
     public int getLevelCount(List<Integer> heights) {
@@ -866,13 +867,17 @@ public class ElevatorTileEntity extends GenericEnergyReceiverTileEntity implemen
     @Override
     public void onBlockPlacedBy(World world, BlockPos pos, IBlockState state, EntityLivingBase placer, ItemStack stack) {
         super.onBlockPlacedBy(world, pos, state, placer, stack);
-        clearCaches(world.getBlockState(pos).getValue(FACING_HORIZ));
+        if (!world.isRemote) {
+            ElevatorShafts.getShafts(world).addElevator(world.provider.getDimension(), pos, world.getBlockState(pos).getValue(FACING_HORIZ));
+        }
     }
 
     @Override
     public void onBlockBreak(World workd, BlockPos pos, IBlockState state) {
         super.onBlockBreak(workd, pos, state);
-        clearCaches(state.getValue(FACING_HORIZ));
+        if (!workd.isRemote) {
+            ElevatorShafts.getShafts(workd).removeElevator(workd.provider.getDimension(), pos, state.getValue(FACING_HORIZ));
+        }
     }
 
     @Override
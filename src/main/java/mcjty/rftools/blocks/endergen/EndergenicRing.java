@@ -0,0 +1,98 @@
+package mcjty.rftools.blocks.endergen;
+
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A chain of endergenic generators. It starts at a generator with a pearl injector and follows
+ * the destinations until the chain ends or loops back to a generator that is already in it.
+ * All generators that lead to the same generator with an injector share the ring.
+ *
+ * Rings are only calculated again when the topology version changes. That happens when a
+ * destination changes or when a generator or injector is loaded or removed. Rings only exist
+ * on the server so changes on the client are ignored.
+ */
+public class EndergenicRing {
+
+    private static int topologyVersion = 0;
+
+    private final List<EndergenicTileEntity> members;   // Starting with the generator with the injector
+    private final int loopIndex;                        // Index the last member sends to or -1 if the chain ends
+    private int queuedBatch = -1;
+
+    private EndergenicRing(List<EndergenicTileEntity> members, int loopIndex) {
+        this.members = members;
+        this.loopIndex = loopIndex;
+    }
+
+    public static int getTopologyVersion() {
+        return topologyVersion;
+    }
+
+    // The world can be null while a tile entity is read from a chunk. onLoad() follows later
+    public static void topologyChanged(World world) {
+        if (world != null && !world.isRemote) {
+            topologyVersion++;
+        }
+    }
+
+    public static EndergenicRing create(EndergenicTileEntity head) {
+        List<EndergenicTileEntity> members = new ArrayList<>();
+        Map<EndergenicTileEntity, Integer> indices = new IdentityHashMap<>();
+        EndergenicTileEntity e = head;
+        while (e != null) {
+            Integer idx = indices.get(e);
+            if (idx != null) {
+                return new EndergenicRing(members, idx);
+            }
+            indices.put(e, members.size());
+            members.add(e);
+            e = e.getDestinationTE();
+        }
+        return new EndergenicRing(members, -1);
+    }
+
+    // Returns true if this ring wasn't queued yet for this batch
+    public boolean queue(int batch) {
+        if (queuedBatch == batch) {
+            return false;
+        }
+        queuedBatch = batch;
+        return true;
+    }
+
+    /**
+     * Process the generators in the order the pearls travel. Start at the first generator
+     * (from the injector) that has pearls in transit or else at the generator with the injector.
+     */
+    public void process(int batch) {
+        int size = members.size();
+        int start = 0;
+        for (int i = 0 ; i < size ; i++) {
+            if (members.get(i).hasPearls()) {
+                start = i;
+                break;
+            }
+        }
+
+        int count;
+        if (loopIndex != -1 && start >= loopIndex) {
+            count = size - loopIndex;
+        } else {
+            count = size - start;
+        }
+        int i = start;
+        while (count > 0) {
+            members.get(i).processWork(batch);
+            i++;
+            if (i >= size) {
+                i = loopIndex;
+            }
+            count--;
+        }
+    }
+}
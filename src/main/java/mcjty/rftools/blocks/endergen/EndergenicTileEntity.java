@@ -10,11 +10,10 @@ import mcjty.lib.typed.Key;
 import mcjty.lib.typed.Type;
 import mcjty.lib.typed.TypedMap;
 import mcjty.lib.varia.BlockPosTools;
-import mcjty.lib.varia.EnergyTools;
-import mcjty.lib.varia.GlobalCoordinate;
 import mcjty.lib.varia.Logging;
 import mcjty.rftools.ClientCommandHandler;
 import mcjty.rftools.RFTools;
+import mcjty.rftools.blocks.EnergyNeighbourCache;
 import mcjty.rftools.hud.IHudSupport;
 import mcjty.rftools.network.PacketGetHudLog;
 import mcjty.rftools.network.RFToolsMessages;
@@ -36,7 +35,6 @@ import net.minecraftforge.common.util.Constants;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
-import java.util.function.Predicate;
 
 public class EndergenicTileEntity extends GenericEnergyStorageTileEntity implements ITickable, MachineInformation,
         IHudSupport, IMachineInformation {
@@ -109,6 +107,8 @@ public class EndergenicTileEntity extends GenericEnergyStorageTileEntity impleme
     // Current traveling pearls.
     private List<EndergenicPearl> pearls = new ArrayList<>();
 
+    private final EnergyNeighbourCache receivers = new EnergyNeighbourCache(this);
+
     private long lastHudTime = 0;
     private List<String> clientHudLog = new ArrayList<>();
 
@@ -122,9 +122,18 @@ public class EndergenicTileEntity extends GenericEnergyStorageTileEntity impleme
 
     private int tickCounter = 0;            // Only used for logging, counts server ticks.
 
-    // We enqueue endergenics for processing later
-    public static List<EndergenicTileEntity> todoEndergenics = new ArrayList<>();
-    public static Set<GlobalCoordinate> endergenicsAdded = new HashSet<>();
+    // We enqueue endergenics for processing later. Rings are processed first (in the order
+    // the pearls travel) and then all other endergenics that aren't processed yet
+    private static final List<EndergenicRing> todoRings = new ArrayList<>();
+    private static final List<EndergenicTileEntity> todoEndergenics = new ArrayList<>();
+    private static int batch = 0;
+    private int queuedBatch = -1;
+    private int processedBatch = -1;
+
+    // The ring this endergenic is part of (or leads to). Only valid if ringVersion is
+    // equal to the current topology version
+    private EndergenicRing ring = null;
+    private int ringVersion = -1;
 
     public EndergenicTileEntity() {
         super(5000000, 20000);
@@ -157,6 +166,13 @@ public class EndergenicTileEntity extends GenericEnergyStorageTileEntity impleme
         return null;
     }
 
+    @Override
+    public void checkRedstone(World world, BlockPos pos) {
+        super.checkRedstone(world, pos);
+        // Called when a neighbouring block changed
+        receivers.invalidate();
+    }
+
     @Override
     public void update() {
         // bad and good counter are handled both client and server side
@@ -176,59 +192,92 @@ public class EndergenicTileEntity extends GenericEnergyStorageTileEntity impleme
 
     // Postpone the actual tick to after all other TE's have ticked (in a WorldTickEvent)
     private void queueWork() {
-        GlobalCoordinate gc = new GlobalCoordinate(getPos(), getWorld().provider.getDimension());
-        if (endergenicsAdded.contains(gc)) {
+        if (queuedBatch == batch) {
             // We're already there. Nothing to do
             return;
         }
+        queuedBatch = batch;
 
-        // Find an endergenic with an injector.
-        EndergenicTileEntity withInjector = findEndergenicWithPredicate(new HashSet<>(), EndergenicTileEntity::hasInjector);
-        if (withInjector != null) {
-            // From this injector locate if possible an injector that has a pearl and use
-            // that one instead as the head of the endergenic list for post-tick processing.
-            EndergenicTileEntity loop = withInjector.findEndergenicWithPredicate(new HashSet<>(), p -> !p.pearls.isEmpty());
-            if (loop == null) loop = withInjector;
-            Set<BlockPos> done = new HashSet<>();
-
-            while (loop != null) {
-                done.add(loop.getPos());
-                addToQueue(loop, new GlobalCoordinate(loop.getPos(), getWorld().provider.getDimension()));
-                loop = loop.getDestinationTE();
-                if (loop == null || done.contains(loop.getPos())) {
-                    loop = null;
-                }
-            }
+        EndergenicRing r = getRing();
+        if (r != null && r.queue(batch)) {
+            todoRings.add(r);
         }
-        // In all cases we add this endergenic. This will not do anything
-        // if it was already added before
-        addToQueue(this, gc);
+        // In all cases we add this endergenic. It will not be processed twice
+        todoEndergenics.add(this);
     }
 
-    private void addToQueue(EndergenicTileEntity endergenicWithInjector, GlobalCoordinate gc2) {
-        if (!endergenicsAdded.contains(gc2)) {
-            todoEndergenics.add(endergenicWithInjector);
-            endergenicsAdded.add(gc2);
+    /**
+     * Process all endergenics that were queued during this tick. Called from the world tick handler.
+     */
+    public static void processQueuedWork() {
+        if (todoEndergenics.isEmpty()) {
+            return;
+        }
+        for (EndergenicRing r : todoRings) {
+            r.process(batch);
         }
+        for (EndergenicTileEntity endergenic : todoEndergenics) {
+            endergenic.processWork(batch);
+        }
+        todoRings.clear();
+        todoEndergenics.clear();
+        batch++;
     }
 
-    private EndergenicTileEntity findEndergenicWithPredicate(Set<BlockPos> done, Predicate<EndergenicTileEntity> pred) {
-        if (pred.test(this)) {
-            return this;
+    void processWork(int b) {
+        if (processedBatch != b && !isInvalid()) {
+            processedBatch = b;
+            checkStateServer();
         }
-        if (destination == null) {
-            return null;
+    }
+
+    boolean hasPearls() {
+        return !pearls.isEmpty();
+    }
+
+    private EndergenicRing getRing() {
+        int version = EndergenicRing.getTopologyVersion();
+        if (ringVersion != version) {
+            ringVersion = version;
+            ring = findRing();
         }
-        // Avoid eternal loops
-        done.add(getPos());
-        if (done.contains(destination)) {
-            return null;
+        return ring;
+    }
+
+    // Follow the destinations until we find an endergenic with an injector. The ring is
+    // owned by that endergenic
+    private EndergenicRing findRing() {
+        Set<BlockPos> done = new HashSet<>();
+        EndergenicTileEntity e = this;
+        while (!e.hasInjector()) {
+            done.add(e.getPos());
+            e = e.getDestinationTE();
+            if (e == null || done.contains(e.getPos())) {
+                return null;
+            }
         }
-        TileEntity te = getWorld().getTileEntity(destination);
-        if (te instanceof EndergenicTileEntity) {
-            return ((EndergenicTileEntity) te).findEndergenicWithPredicate(done, pred);
+        if (e != this) {
+            return e.getRing();
         }
-        return null;
+        return EndergenicRing.create(this);
+    }
+
+    @Override
+    public void onLoad() {
+        super.onLoad();
+        EndergenicRing.topologyChanged(getWorld());
+    }
+
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        EndergenicRing.topologyChanged(getWorld());
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        EndergenicRing.topologyChanged(getWorld());
     }
 
     private boolean hasInjector() {
@@ -483,12 +532,9 @@ public class EndergenicTileEntity extends GenericEnergyStorageTileEntity impleme
         }
 
         for (EnumFacing dir : EnumFacing.VALUES) {
-            BlockPos o = getPos().offset(dir);
-            TileEntity te = getWorld().getTileEntity(o);
-            EnumFacing opposite = dir.getOpposite();
-            if (EnergyTools.isEnergyTE(te, opposite)) {
+            if (receivers.getReceiver(dir) != null) {
                 long rfToGive = Math.min(EndergenicConfiguration.rfOutput, energyAvailable);
-                long received = EnergyTools.receiveEnergy(te, opposite, rfToGive);
+                long received = receivers.sendEnergy(dir, rfToGive);
                 energyAvailable -= storage.extractEnergy(received, false);
                 if (energyAvailable <= 0) {
                     break;
@@ -551,7 +597,7 @@ public class EndergenicTileEntity extends GenericEnergyStorageTileEntity impleme
      *
      * @return the destination TE or null if there is no valid one
      */
-    private EndergenicTileEntity getDestinationTE() {
+    EndergenicTileEntity getDestinationTE() {
         if (destination == null) {
             return null;
         }
@@ -560,6 +606,7 @@ public class EndergenicTileEntity extends GenericEnergyStorageTileEntity impleme
             return (EndergenicTileEntity) te;
         } else {
             destination = null;
+            EndergenicRing.topologyChanged(getWorld());
             markDirtyClient();
             return null;
         }
@@ -713,6 +760,7 @@ public class EndergenicTileEntity extends GenericEnergyStorageTileEntity impleme
         markDirtyQuick();
         this.destination = destination;
         distance = calculateDistance(destination);
+        EndergenicRing.topologyChanged(getWorld());
 
         if (getWorld().isRemote) {
             // We're on the client. Send change to server.
@@ -732,6 +780,7 @@ public class EndergenicTileEntity extends GenericEnergyStorageTileEntity impleme
         currentAge = tagCompound.getInteger("age");
         destination = BlockPosTools.readFromNBT(tagCompound, "dest");
         distance = tagCompound.getInteger("distance");
+        EndergenicRing.topologyChanged(getWorld());
         prevIn = tagCompound.getBoolean("prevIn");
         badCounter = tagCompound.getByte("bad");
         goodCounter = tagCompound.getByte("good");
@@ -29,6 +29,10 @@ public class PearlInjectorTileEntity extends GenericTileEntity implements Defaul
     // For pulse detection.
     private boolean prevIn = false;
 
+    // The endergenic this injector feeds depends on its orientation. If the state changes
+    // (placed, loaded or rotated) the endergenic rings have to be calculated again
+    private IBlockState lastState = null;
+
     @Override
     protected boolean needsCustomInvWrapper() {
         return true;
@@ -44,6 +48,18 @@ public class PearlInjectorTileEntity extends GenericTileEntity implements Defaul
         return getEndergenicGeneratorAt(EnumFacing.UP);
     }
 
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        EndergenicRing.topologyChanged(getWorld());
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        EndergenicRing.topologyChanged(getWorld());
+    }
+
     private EndergenicTileEntity getEndergenicGeneratorAt(EnumFacing k) {
         BlockPos o = getPos().offset(k);
         TileEntity te = getWorld().getTileEntity(o);
@@ -56,6 +72,11 @@ public class PearlInjectorTileEntity extends GenericTileEntity implements Defaul
     @Override
     public void update() {
         if (!getWorld().isRemote) {
+            IBlockState state = getWorld().getBlockState(getPos());
+            if (state != lastState) {
+                lastState = state;
+                EndergenicRing.topologyChanged(getWorld());
+            }
             checkStateServer();
         }
     }
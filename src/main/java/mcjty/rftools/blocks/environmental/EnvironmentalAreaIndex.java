@@ -0,0 +1,209 @@
+package mcjty.rftools.blocks.environmental;
+
+import mcjty.lib.varia.GlobalCoordinate;
+import mcjty.lib.varia.WorldTools;
+import mcjty.rftools.blocks.environmental.modules.BuffEModule;
+import mcjty.rftools.blocks.environmental.modules.EnvironmentModule;
+import mcjty.rftools.varia.LongHashMap;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
+
+import java.util.*;
+
+/**
+ * The areas of all environmental controllers that have a module of a certain type (peaceful,
+ * no teleport). Every area is put in a bucket for every chunk it overlaps so a query only
+ * has to test the areas near the position. Areas that are not refreshed by their controller
+ * are removed by sweep().
+ */
+public class EnvironmentalAreaIndex {
+
+    private static final long TIMEOUT = 10000;
+    private static final long SWEEP_INTERVAL = 1000;
+
+    private final Class<? extends BuffEModule> moduleClass;
+    private final Map<GlobalCoordinate, Area> areas = new HashMap<>();
+    private final LongHashMap<List<Area>> buckets = new LongHashMap<>();
+    private long lastSweep = 0;
+
+    public EnvironmentalAreaIndex(Class<? extends BuffEModule> moduleClass) {
+        this.moduleClass = moduleClass;
+    }
+
+    public boolean isEmpty() {
+        return areas.isEmpty();
+    }
+
+    public void markArea(GlobalCoordinate coordinate, int radius, int miny, int maxy) {
+        Area area = areas.get(coordinate);
+        if (area != null) {
+            area.touch();
+            if (area.radius == radius && area.miny == miny && area.maxy == maxy) {
+                return;
+            }
+            removeFromBuckets(area);
+        }
+        area = new Area(coordinate, radius, miny, maxy);
+        areas.put(coordinate, area);
+        addToBuckets(area);
+    }
+
+    /**
+     * Return the areas that can contain positions in this chunk (or null if there are none).
+     * Use Area.in() to test the exact position.
+     */
+    public List<Area> getAreas(int dimension, int chunkX, int chunkZ) {
+        if (areas.isEmpty()) {
+            return null;
+        }
+        return buckets.get(LongHashMap.chunkKey(dimension, chunkX, chunkZ));
+    }
+
+    private void addToBuckets(Area area) {
+        for (int cx = area.getMinChunkX() ; cx <= area.getMaxChunkX() ; cx++) {
+            for (int cz = area.getMinChunkZ() ; cz <= area.getMaxChunkZ() ; cz++) {
+                long key = LongHashMap.chunkKey(area.dimension, cx, cz);
+                List<Area> list = buckets.get(key);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    buckets.put(key, list);
+                }
+                list.add(area);
+            }
+        }
+    }
+
+    private void removeFromBuckets(Area area) {
+        for (int cx = area.getMinChunkX() ; cx <= area.getMaxChunkX() ; cx++) {
+            for (int cz = area.getMinChunkZ() ; cz <= area.getMaxChunkZ() ; cz++) {
+                long key = LongHashMap.chunkKey(area.dimension, cx, cz);
+                List<Area> list = buckets.get(key);
+                if (list != null) {
+                    list.remove(area);
+                    if (list.isEmpty()) {
+                        buckets.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the areas that haven't been touched for a while and for which the controller
+     * no longer has an active module. Does nothing if it was called less than a second ago.
+     */
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        if (areas.isEmpty() || now - lastSweep < SWEEP_INTERVAL) {
+            return;
+        }
+        lastSweep = now;
+
+        long curtime = now - TIMEOUT;
+        Iterator<Map.Entry<GlobalCoordinate, Area>> iterator = areas.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Area area = iterator.next().getValue();
+            if (area.lastTouched < curtime && !isStillActive(area.coordinate)) {
+                iterator.remove();
+                removeFromBuckets(area);
+            }
+        }
+    }
+
+    private boolean isStillActive(GlobalCoordinate coordinate) {
+        // Hasn't been touched for at least 10 seconds. Probably no longer valid.
+        // To be sure we will first check this by testing if the environmental controller is still active and running.
+        WorldServer world = DimensionManager.getWorld(coordinate.getDimension());
+        if (world == null) {
+            return true;
+        }
+        BlockPos c = coordinate.getCoordinate();
+        // If the world is not loaded we don't do anything and we also don't remove the area since we have no information about it.
+        if (!WorldTools.chunkLoaded(world, c)) {
+            return true;
+        }
+        TileEntity te = world.getTileEntity(c);
+        if (te instanceof EnvironmentalControllerTileEntity) {
+            EnvironmentalControllerTileEntity controllerTileEntity = (EnvironmentalControllerTileEntity) te;
+            for (EnvironmentModule module : controllerTileEntity.getEnvironmentModules()) {
+                if (moduleClass.isInstance(module) && ((BuffEModule) module).isActive()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public static class Area {
+        private final GlobalCoordinate coordinate;
+        private final int dimension;
+        private final int cx;
+        private final int cz;
+        private final int radius;
+        private final float sqradius;
+        private final int miny;
+        private final int maxy;
+        private long lastTouched;
+
+        public Area(GlobalCoordinate coordinate, int radius, int miny, int maxy) {
+            this.coordinate = coordinate;
+            this.dimension = coordinate.getDimension();
+            this.cx = coordinate.getCoordinate().getX();
+            this.cz = coordinate.getCoordinate().getZ();
+            this.radius = radius;
+            this.sqradius = (float) radius * radius;
+            this.miny = miny;
+            this.maxy = maxy;
+            touch();
+        }
+
+        public GlobalCoordinate getCoordinate() {
+            return coordinate;
+        }
+
+        public void touch() {
+            lastTouched = System.currentTimeMillis();
+        }
+
+        private int getMinChunkX() {
+            return (cx - radius) >> 4;
+        }
+
+        private int getMaxChunkX() {
+            return (cx + radius) >> 4;
+        }
+
+        private int getMinChunkZ() {
+            return (cz - radius) >> 4;
+        }
+
+        private int getMaxChunkZ() {
+            return (cz + radius) >> 4;
+        }
+
+        public boolean in(int dim, int x, int y, int z) {
+            if (dim != dimension) {
+                return false;
+            }
+            if (y < miny || y > maxy) {
+                return false;
+            }
+            double px = x - cx;
+            double pz = z - cz;
+            double sqdist = px * px + pz * pz;
+            return sqdist < sqradius;
+        }
+
+        @Override
+        public String toString() {
+            return "Area{" +
+                    "sqradius=" + sqradius +
+                    ", miny=" + miny +
+                    ", maxy=" + maxy +
+                    ", lastTouched=" + lastTouched +
+                    '}';
+        }
+    }
+}
@@ -26,6 +26,7 @@ import mcp.mobius.waila.api.IWailaConfigHandler;
 import mcp.mobius.waila.api.IWailaDataAccessor;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityLivingBase;
 import net.minecraft.entity.monster.IMob;
 import net.minecraft.entity.passive.IAnimals;
 import net.minecraft.entity.player.EntityPlayer;
@@ -37,6 +38,7 @@ import net.minecraft.nbt.NBTTagString;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.ITickable;
 import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.TextFormatting;
 import net.minecraft.world.World;
@@ -111,6 +113,12 @@ public class EnvironmentalControllerTileEntity extends GenericEnergyReceiverTile
 
     private int powerTimeout = 0;
 
+    // Entities in range. These are gathered at most once per tick (only when a module needs them)
+    // and then shared by all modules
+    private List<EntityPlayer> affectedPlayers = null;
+    private List<EntityLivingBase> affectedEntities = null;
+    private List<EntityPlayer> unaffectedPlayers = null;
+
     public EnvironmentalControllerTileEntity() {
         super(EnvironmentalConfiguration.ENVIRONMENTAL_MAXENERGY, EnvironmentalConfiguration.ENVIRONMENTAL_RECEIVEPERTICK);
     }
@@ -295,6 +303,69 @@ public class EnvironmentalControllerTileEntity extends GenericEnergyReceiverTile
         return active;
     }
 
+    private boolean isInRange(Entity entity) {
+        double py = entity.posY;
+        if (py < miny || py > maxy) {
+            return false;
+        }
+        double dx = entity.posX - getPos().getX();
+        double dz = entity.posZ - getPos().getZ();
+        return dx * dx + dz * dz < radius * radius;
+    }
+
+    /**
+     * All players in range that are affected by this controller (according to isPlayerAffected())
+     */
+    public List<EntityPlayer> getAffectedPlayers() {
+        if (affectedPlayers == null) {
+            affectedPlayers = new ArrayList<>();
+            for (EntityPlayer player : getWorld().playerEntities) {
+                if (isInRange(player) && isPlayerAffected(player)) {
+                    affectedPlayers.add(player);
+                }
+            }
+        }
+        return affectedPlayers;
+    }
+
+    /**
+     * All living entities in range that are affected by this controller (according to isEntityAffected())
+     */
+    public List<EntityLivingBase> getAffectedEntities() {
+        if (affectedEntities == null) {
+            findEntities();
+        }
+        return affectedEntities;
+    }
+
+    /**
+     * All players in range that are not affected by this controller (according to isEntityAffected())
+     */
+    public List<EntityPlayer> getUnaffectedPlayers() {
+        if (unaffectedPlayers == null) {
+            findEntities();
+        }
+        return unaffectedPlayers;
+    }
+
+    private void findEntities() {
+        affectedEntities = new ArrayList<>();
+        unaffectedPlayers = new ArrayList<>();
+        BlockPos pos = getPos();
+        List<EntityLivingBase> entities = getWorld().getEntitiesWithinAABB(EntityLivingBase.class, new AxisAlignedBB(
+                pos.getX() - radius, pos.getY() - radius, pos.getZ() - radius,
+                pos.getX() + radius, pos.getY() + radius, pos.getZ() + radius));
+        for (EntityLivingBase entity : entities) {
+            if (isInRange(entity)) {
+                if (isEntityAffected(entity)) {
+                    affectedEntities.add(entity);
+                } else if (entity instanceof EntityPlayer) {
+                    unaffectedPlayers.add((EntityPlayer) entity);
+                }
+            }
+        }
+    }
+
     public int getTotalRfPerTick() {
         if (environmentModules == null) {
             getEnvironmentModules();
@@ -357,6 +428,10 @@ public class EnvironmentalControllerTileEntity extends GenericEnergyReceiverTile
     }
 
     private void checkStateServer() {
+        affectedPlayers = null;
+        affectedEntities = null;
+        unaffectedPlayers = null;
+
         if (powerTimeout > 0) {
             powerTimeout--;
             return;
@@ -8,9 +8,6 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public abstract class BuffEModule implements EnvironmentModule {
     public static final int MAXTICKS = 180;
 
@@ -38,22 +35,9 @@ public abstract class BuffEModule implements EnvironmentModule {
         }
         ticks = MAXTICKS;
 
-        double maxsqdist = radius * radius;
-        List<EntityPlayer> players = new ArrayList<>(world.playerEntities);
-        for (EntityPlayer player : players) {
-            double py = player.posY;
-            if (py >= miny && py <= maxy) {
-                double px = player.posX;
-                double pz = player.posZ;
-                double sqdist = (px-pos.getX()) * (px-pos.getX()) + (pz-pos.getZ()) * (pz-pos.getZ());
-                if (sqdist < maxsqdist) {
-                    if (controllerTileEntity.isPlayerAffected(player)) {
-                        BuffProperties.addBuffToPlayer(player, buff, MAXTICKS);
-                    }
-                }
-            }
+        for (EntityPlayer player : controllerTileEntity.getAffectedPlayers()) {
+            BuffProperties.addBuffToPlayer(player, buff, MAXTICKS);
         }
-
     }
 
     @Override
@@ -8,18 +8,15 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.potion.Potion;
 import net.minecraft.potion.PotionEffect;
 import net.minecraft.util.ResourceLocation;
-import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public abstract class PotionEffectModule implements EnvironmentModule {
     public static final int MAXTICKS = 180;
 
     private final Potion potion;
     private final int amplifier;
+    private final PotionEffect refreshEffect;       // Only used to extend existing effects. Never added to an entity
 
     private boolean active = false;
     private int ticks = MAXTICKS;
@@ -27,6 +24,7 @@ public abstract class PotionEffectModule implements EnvironmentModule {
     public PotionEffectModule(String potionname, int amplifier) {
         this.potion = Potion.REGISTRY.getObject(new ResourceLocation(potionname));
         this.amplifier = amplifier;
+        this.refreshEffect = new PotionEffect(potion, MAXTICKS * 3, amplifier, true, false);
     }
 
     protected abstract PlayerBuff getBuff();
@@ -52,71 +50,54 @@ public abstract class PotionEffectModule implements EnvironmentModule {
             case MODE_BLACKLIST:
             case MODE_WHITELIST:
                 if (allowedForPlayers()) {
-                    processPlayers(world, pos, radius, miny, maxy, controllerTileEntity);
+                    processPlayers(controllerTileEntity);
                 }
                 break;
             case MODE_HOSTILE:
             case MODE_PASSIVE:
             case MODE_MOBS:
             case MODE_ALL:
-                processEntities(world, pos, radius, miny, maxy, controllerTileEntity);
+                processEntities(controllerTileEntity);
                 break;
         }
     }
 
-    private void processPlayers(World world, BlockPos pos, int radius, int miny, int maxy, EnvironmentalControllerTileEntity controllerTileEntity) {
-        double maxsqdist = radius * radius;
-        List<EntityPlayer> players = new ArrayList<>(world.playerEntities);
-        for (EntityPlayer player : players) {
-            double py = player.posY;
-            if (py >= miny && py <= maxy) {
-                double px = player.posX;
-                double pz = player.posZ;
-                double sqdist = (px-pos.getX()) * (px-pos.getX()) + (pz-pos.getZ()) * (pz-pos.getZ());
-                if (sqdist < maxsqdist) {
-                    if (controllerTileEntity.isPlayerAffected(player)) {
-                        player.addPotionEffect(new PotionEffect(potion, MAXTICKS * 3, amplifier, true, false));
-                        PlayerBuff buff = getBuff();
-                        if (buff != null) {
-                            BuffProperties.addBuffToPlayer(player, buff, MAXTICKS);
-                        }
-                    }
-                }
+    private void processPlayers(EnvironmentalControllerTileEntity controllerTileEntity) {
+        PlayerBuff buff = getBuff();
+        for (EntityPlayer player : controllerTileEntity.getAffectedPlayers()) {
+            applyEffect(player);
+            if (buff != null) {
+                BuffProperties.addBuffToPlayer(player, buff, MAXTICKS);
             }
         }
     }
 
-    private void processEntities(World world, BlockPos pos, int radius, int miny, int maxy, EnvironmentalControllerTileEntity controllerTileEntity) {
-        double maxsqdist = radius * radius;
-        List<EntityLivingBase> entities = world.getEntitiesWithinAABB(EntityLivingBase.class, new AxisAlignedBB(
-                pos.getX() - radius, pos.getY() - radius, pos.getZ() - radius,
-                pos.getX() + radius, pos.getY() + radius, pos.getZ() + radius));
-        for (EntityLivingBase entity : entities) {
-            double py = entity.posY;
-            if (py >= miny && py <= maxy) {
-                double px = entity.posX;
-                double pz = entity.posZ;
-                double sqdist = (px-pos.getX()) * (px-pos.getX()) + (pz-pos.getZ()) * (pz-pos.getZ());
-                if (sqdist < maxsqdist) {
-                    if (controllerTileEntity.isEntityAffected(entity)) {
-                        if (!(entity instanceof EntityPlayer) || allowedForPlayers()) {
-                            entity.addPotionEffect(new PotionEffect(potion, MAXTICKS * 3, amplifier, true, false));
-                            PlayerBuff buff = getBuff();
-                            if (buff != null) {
-                                if (entity instanceof EntityPlayer) {
-                                    BuffProperties.addBuffToPlayer((EntityPlayer) entity, buff, MAXTICKS);
-                                }
-                            }
-                        }
-                    } else if (entity instanceof EntityPlayer) {
-                        PlayerBuff buff = getBuff();
-                        if (buff != null) {
-                            BuffProperties.addBuffToPlayer((EntityPlayer) entity, buff, MAXTICKS);
-                        }
-                    }
+    private void processEntities(EnvironmentalControllerTileEntity controllerTileEntity) {
+        PlayerBuff buff = getBuff();
+        for (EntityLivingBase entity : controllerTileEntity.getAffectedEntities()) {
+            if (!(entity instanceof EntityPlayer) || allowedForPlayers()) {
+                applyEffect(entity);
+                if (buff != null && entity instanceof EntityPlayer) {
+                    BuffProperties.addBuffToPlayer((EntityPlayer) entity, buff, MAXTICKS);
                 }
             }
         }
+        if (buff != null) {
+            for (EntityPlayer player : controllerTileEntity.getUnaffectedPlayers()) {
+                BuffProperties.addBuffToPlayer(player, buff, MAXTICKS);
+            }
+        }
+    }
+
+    private void applyEffect(EntityLivingBase entity) {
+        PotionEffect current = entity.getActivePotionEffect(potion);
+        if (current != null && !(entity instanceof EntityPlayer) && current.getAmplifier() == amplifier && current.getIsAmbient()) {
+            // Same effect that we gave earlier. Just extend it in place. Players always get a new
+            // effect so that the client is told about the new duration
+            current.combine(refreshEffect);
+        } else {
+            entity.addPotionEffect(new PotionEffect(potion, MAXTICKS * 3, amplifier, true, false));
+        }
     }
 
     @Override
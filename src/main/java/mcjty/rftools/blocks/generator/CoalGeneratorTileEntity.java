@@ -9,6 +9,7 @@ import mcjty.lib.gui.widgets.ImageChoiceLabel;
 import mcjty.lib.varia.EnergyTools;
 import mcjty.lib.varia.RedstoneMode;
 import mcjty.rftools.RFTools;
+import mcjty.rftools.blocks.EnergyNeighbourCache;
 import mcjty.theoneprobe.api.IProbeHitData;
 import mcjty.theoneprobe.api.IProbeInfo;
 import mcjty.theoneprobe.api.ProbeMode;
@@ -26,7 +27,6 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.network.NetworkManager;
 import net.minecraft.network.play.server.SPacketUpdateTileEntity;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.ITickable;
 import net.minecraft.util.ResourceLocation;
@@ -53,6 +53,7 @@ public class CoalGeneratorTileEntity extends GenericEnergyStorageTileEntity impl
     public static final ContainerFactory CONTAINER_FACTORY = new ContainerFactory(new ResourceLocation(RFTools.MODID, "gui/coalgenerator.gui"));
 
     private InventoryHelper inventoryHelper = new InventoryHelper(this, CONTAINER_FACTORY, 2);
+    private final EnergyNeighbourCache receivers = new EnergyNeighbourCache(this);
 
     private int burning;
 
@@ -106,6 +107,13 @@ public class CoalGeneratorTileEntity extends GenericEnergyStorageTileEntity impl
         }
     }
 
+    @Override
+    public void checkRedstone(World world, BlockPos pos) {
+        super.checkRedstone(world, pos);
+        // Called when a neighbouring block changed
+        receivers.invalidate();
+    }
+
     @Override
     public void update() {
         if (!getWorld().isRemote) {
@@ -190,12 +198,9 @@ public class CoalGeneratorTileEntity extends GenericEnergyStorageTileEntity impl
         long storedPower = getStoredPower();
 
         for (EnumFacing facing : EnumFacing.VALUES) {
-            BlockPos pos = getPos().offset(facing);
-            TileEntity te = getWorld().getTileEntity(pos);
-            EnumFacing opposite = facing.getOpposite();
-            if (EnergyTools.isEnergyTE(te, opposite)) {
+            if (receivers.getReceiver(facing) != null) {
                 long rfToGive = Math.min(CoalGeneratorConfiguration.SENDPERTICK, storedPower);
-                long received = EnergyTools.receiveEnergy(te, opposite, rfToGive);
+                long received = receivers.sendEnergy(facing, rfToGive);
                 storedPower -= storage.extractEnergy(received, false);
                 if (storedPower <= 0) {
                     break;
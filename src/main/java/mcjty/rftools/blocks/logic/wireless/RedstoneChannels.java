@@ -1,13 +1,18 @@
 package mcjty.rftools.blocks.logic.wireless;
 
+import mcjty.lib.varia.GlobalCoordinate;
+import mcjty.lib.varia.WorldTools;
 import mcjty.lib.worlddata.AbstractWorldData;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
 import net.minecraftforge.common.util.Constants;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 public class RedstoneChannels extends AbstractWorldData<RedstoneChannels> {
 
@@ -17,6 +22,10 @@ public class RedstoneChannels extends AbstractWorldData<RedstoneChannels> {
 
     private final Map<Integer,RedstoneChannel> channels = new HashMap<>();
 
+    // Receivers that have to update their output at the next tick (because the value of their
+    // channel changed or because they were just loaded)
+    private Set<GlobalCoordinate> receiversToUpdate = new HashSet<>();
+
     public RedstoneChannels(String name) {
         super(name);
     }
@@ -24,6 +33,7 @@ public class RedstoneChannels extends AbstractWorldData<RedstoneChannels> {
     @Override
     public void clear() {
         channels.clear();
+        receiversToUpdate.clear();
         lastId = 0;
     }
 
@@ -34,7 +44,7 @@ public class RedstoneChannels extends AbstractWorldData<RedstoneChannels> {
     public RedstoneChannel getOrCreateChannel(int id) {
         RedstoneChannel channel = channels.get(id);
         if (channel == null) {
-            channel = new RedstoneChannel();
+            channel = new RedstoneChannel(this);
             channels.put(id, channel);
         }
         return channel;
@@ -53,6 +63,57 @@ public class RedstoneChannels extends AbstractWorldData<RedstoneChannels> {
         return lastId;
     }
 
+    /**
+     * Register a loaded receiver on a channel. The receiver will be updated at the next tick
+     * and after that every time the value of the channel changes.
+     */
+    public void subscribe(int id, GlobalCoordinate receiver) {
+        getOrCreateChannel(id).receivers.add(receiver);
+        receiversToUpdate.add(receiver);
+    }
+
+    public void unsubscribe(int id, GlobalCoordinate receiver) {
+        RedstoneChannel channel = channels.get(id);
+        if (channel != null) {
+            channel.receivers.remove(receiver);
+        }
+    }
+
+    /**
+     * Called once per server tick. Updates the receivers of all channels that changed.
+     */
+    public void updateReceivers() {
+        if (receiversToUpdate.isEmpty()) {
+            return;
+        }
+        // A receiver can cause a transmitter to change a channel again. Those receivers are
+        // updated at the next tick
+        Set<GlobalCoordinate> todo = receiversToUpdate;
+        receiversToUpdate = new HashSet<>();
+        for (GlobalCoordinate coordinate : todo) {
+            RedstoneReceiverTileEntity receiver = findReceiver(coordinate);
+            if (receiver != null) {
+                receiver.checkStateServer();
+            }
+        }
+    }
+
+    private static RedstoneReceiverTileEntity findReceiver(GlobalCoordinate coordinate) {
+        WorldServer world = DimensionManager.getWorld(coordinate.getDimension());
+        if (world == null) {
+            return null;
+        }
+        BlockPos pos = coordinate.getCoordinate();
+        if (!WorldTools.chunkLoaded(world, pos)) {
+            return null;
+        }
+        TileEntity te = world.getTileEntity(pos);
+        if (te instanceof RedstoneReceiverTileEntity) {
+            return (RedstoneReceiverTileEntity) te;
+        }
+        return null;
+    }
+
     @Override
     public void readFromNBT(NBTTagCompound tagCompound) {
         channels.clear();
@@ -62,7 +123,7 @@ public class RedstoneChannels extends AbstractWorldData<RedstoneChannels> {
             int channel = tc.getInteger("channel");
             int v = tc.getInteger("value");
 
-            RedstoneChannel value = new RedstoneChannel();
+            RedstoneChannel value = new RedstoneChannel(this);
             value.value = v;
             channels.put(channel, value);
         }
@@ -84,14 +145,26 @@ public class RedstoneChannels extends AbstractWorldData<RedstoneChannels> {
     }
 
     public static class RedstoneChannel {
+        private final RedstoneChannels redstoneChannels;
         private int value = 0;
 
+        // Receivers that are currently loaded. These are not saved: receivers subscribe again when
+        // their chunk is loaded
+        private final Set<GlobalCoordinate> receivers = new HashSet<>();
+
+        public RedstoneChannel(RedstoneChannels redstoneChannels) {
+            this.redstoneChannels = redstoneChannels;
+        }
+
         public int getValue() {
             return value;
         }
 
         public void setValue(int value) {
-            this.value = value;
+            if (this.value != value) {
+                this.value = value;
+                redstoneChannels.receiversToUpdate.addAll(receivers);
+            }
         }
     }
 }
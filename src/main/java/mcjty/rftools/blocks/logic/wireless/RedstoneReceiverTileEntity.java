@@ -2,6 +2,7 @@ package mcjty.rftools.blocks.logic.wireless;
 
 import mcjty.lib.gui.widgets.ToggleButton;
 import mcjty.lib.typed.TypedMap;
+import mcjty.lib.varia.GlobalCoordinate;
 import mcjty.theoneprobe.api.IProbeHitData;
 import mcjty.theoneprobe.api.IProbeInfo;
 import mcjty.theoneprobe.api.ProbeMode;
@@ -12,7 +13,6 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.util.ITickable;
 import net.minecraft.util.text.TextFormatting;
 import net.minecraft.world.World;
 import net.minecraftforge.fml.common.Optional;
@@ -21,12 +21,20 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 
 import java.util.List;
 
-public class RedstoneReceiverTileEntity extends RedstoneChannelTileEntity implements ITickable {
+/**
+ * A receiver doesn't tick. It subscribes to its channel while it is loaded and is updated by
+ * RedstoneChannels.updateReceivers() when the value of the channel changes.
+ */
+public class RedstoneReceiverTileEntity extends RedstoneChannelTileEntity {
 
     public static final String CMD_SETANALOG = "receiver.setAnalog";
 
     private boolean analog = false;
 
+    // The channel this receiver is subscribed to (-1 if not subscribed)
+    private int subscribedChannel = -1;
+    private boolean loaded = false;
+
     public RedstoneReceiverTileEntity() {
     }
 
@@ -37,13 +45,59 @@ public class RedstoneReceiverTileEntity extends RedstoneChannelTileEntity implem
     public void setAnalog(boolean analog) {
         this.analog = analog;
         markDirtyClient();
+        if (!getWorld().isRemote) {
+            checkStateServer();
+        }
     }
 
     @Override
-    public void update() {
-        if (!getWorld().isRemote) {
-            checkStateServer();
+    public void setChannel(int channel) {
+        super.setChannel(channel);
+        updateSubscription();
+    }
+
+    @Override
+    public void onLoad() {
+        super.onLoad();
+        loaded = true;
+        updateSubscription();
+    }
+
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        unsubscribe();
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        unsubscribe();
+    }
+
+    private void updateSubscription() {
+        if (!loaded || getWorld() == null || getWorld().isRemote || subscribedChannel == channel) {
+            return;
+        }
+        RedstoneChannels channels = RedstoneChannels.getChannels(getWorld());
+        GlobalCoordinate coordinate = new GlobalCoordinate(getPos(), getWorld().provider.getDimension());
+        if (subscribedChannel != -1) {
+            channels.unsubscribe(subscribedChannel, coordinate);
+        }
+        subscribedChannel = channel;
+        if (channel != -1) {
+            channels.subscribe(channel, coordinate);
+        } else {
+            setRedstoneState(0);
+        }
+    }
+
+    private void unsubscribe() {
+        loaded = false;
+        if (subscribedChannel != -1 && getWorld() != null && !getWorld().isRemote) {
+            RedstoneChannels.getChannels(getWorld()).unsubscribe(subscribedChannel, new GlobalCoordinate(getPos(), getWorld().provider.getDimension()));
         }
+        subscribedChannel = -1;
     }
 
     protected void checkStateServer() {
@@ -86,6 +140,8 @@ public class RedstoneReceiverTileEntity extends RedstoneChannelTileEntity implem
     public void readRestorableFromNBT(NBTTagCompound tagCompound) {
         super.readRestorableFromNBT(tagCompound);
         analog = tagCompound.getBoolean("analog");
+        // The channel can change when the block is placed from an item with a channel
+        updateSubscription();
     }
 
     @Override
@@ -349,6 +349,25 @@ public class PowerCellBlock extends GenericRFToolsBlock<PowerCellTileEntity, Pow
         super.breakBlock(world, pos, state);
     }
 
+    @Override
+    public void neighborChanged(IBlockState state, World world, BlockPos pos, Block blockIn, BlockPos fromPos) {
+        super.neighborChanged(state, world, pos, blockIn, fromPos);
+        invalidateReceivers(world, pos);
+    }
+
+    @Override
+    public void onNeighborChange(IBlockAccess world, BlockPos pos, BlockPos neighbor) {
+        super.onNeighborChange(world, pos, neighbor);
+        invalidateReceivers(world, pos);
+    }
+
+    private static void invalidateReceivers(IBlockAccess world, BlockPos pos) {
+        TileEntity te = world.getTileEntity(pos);
+        if (te instanceof PowerCellTileEntity) {
+            ((PowerCellTileEntity) te).invalidateReceivers();
+        }
+    }
+
     @Override
     public IBlockState getActualState(IBlockState state, IBlockAccess world, BlockPos pos) {
         TileEntity tileEntity = world instanceof ChunkCache ? ((ChunkCache)world).getTileEntity(pos, Chunk.EnumCreateEntityType.CHECK) : world.getTileEntity(pos);
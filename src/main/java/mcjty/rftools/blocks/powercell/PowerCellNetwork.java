@@ -22,6 +22,9 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
 
     private static final String POWERCELL_NETWORK_NAME = "RFToolsPowerCellNetwork";
 
+    // Number of ticks over which the RF/t statistics of a network are averaged
+    private static final int STATISTICS_TICKS = 40;
+
     private int lastId = 0;
 
     private final Map<Integer,Network> networks = new HashMap<>();
@@ -62,6 +65,23 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
         return lastId;
     }
 
+    /**
+     * Called once per server tick. Closes the energy ledger of every network and marks
+     * this data as dirty only if energy was moved during the last tick. Power cells don't
+     * call save() for every transfer.
+     */
+    public void commitTick() {
+        boolean changed = false;
+        for (Network network : networks.values()) {
+            if (network.commitTick()) {
+                changed = true;
+            }
+        }
+        if (changed) {
+            save();
+        }
+    }
+
     @Override
     public void readFromNBT(NBTTagCompound tagCompound) {
         networks.clear();
@@ -96,9 +116,25 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
         private int simpleBlocks = 0;
         private int advancedBlocks = 0;
 
-        // Connectivity information that calculates the cost of extracting energy depending
-        // on distance factors. Is recalculated automatically if it is null.
-        private Map<GlobalCoordinate, Float> costFactor = null;
+        // Connectivity information: the blob (set of connected cells) for every cell. Blobs
+        // are merged when a cell is added and only the blob of a removed cell is recalculated.
+        // Is recalculated completely if it is null
+        private Map<GlobalCoordinate, Blob> blobOf = null;
+        // If true the cost factors of the blobs have to be recalculated
+        private boolean costFactorDirty = true;
+
+        // Cached result of calculateMaximumEnergy(). -1 if it has to be recalculated
+        private int maximumEnergy = -1;
+
+        // Energy ledger: energy inserted and extracted by the cells of this network during
+        // the current tick. commitTick() moves this to the RF/t statistics
+        private long tickInserted = 0;
+        private long tickExtracted = 0;
+        private long periodInserted = 0;
+        private long periodExtracted = 0;
+        private int periodTicks = 0;
+        private int rfPerTickIn = 0;
+        private int rfPerTickOut = 0;
 
         // Be careful with this! Don't modify the set
         public Set<GlobalCoordinate> getBlocks() {
@@ -118,6 +154,13 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
         }
 
         public int calculateMaximumEnergy() {
+            if (maximumEnergy == -1) {
+                maximumEnergy = computeMaximumEnergy();
+            }
+            return maximumEnergy;
+        }
+
+        private int computeMaximumEnergy() {
             long totEnergyLong = (long) PowerCellConfiguration.rfPerNormalCell * (getBlockCount() - getAdvancedBlockCount() - getSimpleBlockCount())
                     + (long) PowerCellConfiguration.rfPerNormalCell * advancedFactor * getAdvancedBlockCount()
                     + ((long) PowerCellConfiguration.rfPerNormalCell * getSimpleBlockCount() / simpleFactor);
@@ -128,6 +171,7 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
         }
 
         public void updateNetwork(World w) {
+            maximumEnergy = -1;
             advancedBlocks = 0;
             simpleBlocks = 0;
             Iterable<GlobalCoordinate> copy = new HashSet<>(blocks);
@@ -145,6 +189,7 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
                     simpleBlocks++;
                 } else {
                     Logging.log("Warning! Powercell network data was not up-to-date!");
+                    blobOf = null;
                 }
             }
 
@@ -153,7 +198,10 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
         public void add(World world, GlobalCoordinate g, boolean advanced, boolean simple) {
             if (!blocks.contains(g)) {
                 blocks.add(g);
-                costFactor = null;
+                if (blobOf != null) {
+                    addToBlobs(g);
+                }
+                costFactorDirty = true;
                 if (advanced) {
                     advancedBlocks++;
                 }
@@ -167,7 +215,10 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
         public void remove(World world, GlobalCoordinate g, boolean advanced, boolean simple) {
             if (blocks.contains(g)) {
                 blocks.remove(g);
-                costFactor = null;
+                if (blobOf != null) {
+                    removeFromBlobs(g);
+                }
+                costFactorDirty = true;
                 if (advanced) {
                     advancedBlocks--;
                 }
@@ -178,12 +229,9 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
             }
         }
 
-        private double calculateBlobDistance(World world, Set<GlobalCoordinate> blob1, Set<GlobalCoordinate> blob2) {
-            GlobalCoordinate c1 = blob1.iterator().next();
-            GlobalCoordinate c2 = blob2.iterator().next();
-
-            boolean dim1rftools = RFTools.instance.rftoolsDimensions && RFToolsDimensionChecker.isRFToolsDimension(world, c1.getDimension());
-            boolean dim2rftools = RFTools.instance.rftoolsDimensions && RFToolsDimensionChecker.isRFToolsDimension(world, c2.getDimension());
+        private double calculateBlobDistance(World world, Blob blob1, Blob blob2) {
+            boolean dim1rftools = RFTools.instance.rftoolsDimensions && RFToolsDimensionChecker.isRFToolsDimension(world, blob1.dimension);
+            boolean dim2rftools = RFTools.instance.rftoolsDimensions && RFToolsDimensionChecker.isRFToolsDimension(world, blob2.dimension);
             double rftoolsdimMult = 1.0;
             if (dim1rftools) {
                 rftoolsdimMult *= PowerCellConfiguration.powerCellRFToolsDimensionAdvantage;
@@ -192,10 +240,14 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
                 rftoolsdimMult *= PowerCellConfiguration.powerCellRFToolsDimensionAdvantage;
             }
 
-            if (c1.getDimension() != c2.getDimension()) {
+            if (blob1.dimension != blob2.dimension) {
                 return PowerCellConfiguration.powerCellDistanceCap * rftoolsdimMult;
             }
-            double dist = Math.sqrt(c1.getCoordinate().distanceSq(c2.getCoordinate()));
+            // Distance between the centers of both blobs
+            double dx = blob1.getCenterX() - blob2.getCenterX();
+            double dy = blob1.getCenterY() - blob2.getCenterY();
+            double dz = blob1.getCenterZ() - blob2.getCenterZ();
+            double dist = Math.sqrt(dx * dx + dy * dy + dz * dz);
             if (dist > PowerCellConfiguration.powerCellDistanceCap) {
                 dist = PowerCellConfiguration.powerCellDistanceCap;
             } else if (dist < PowerCellConfiguration.powerCellMinDistance) {
@@ -205,19 +257,20 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
         }
 
         private void updateCostFactor(World world) {
-            if (costFactor == null) {
-                costFactor = new HashMap<>();
-                // Here we calculate the different blobs of powercells (all connected cells)
-                List<Set<GlobalCoordinate>> blobs = new ArrayList<>();
-                getBlobs(blobs);
+            if (blobOf == null) {
+                rebuildBlobs();
+            }
+            if (costFactorDirty) {
+                costFactorDirty = false;
+                List<Blob> blobs = new ArrayList<>(new HashSet<>(blobOf.values()));
 
                 // For every blob we calculate it's 'strength' relative to the other blobs.
-                for (Set<GlobalCoordinate> blob : blobs) {
+                for (Blob blob : blobs) {
 
                     double totalfactor = 1.0f;
 
                     // Scan all blobs different from this one
-                    for (Set<GlobalCoordinate> blob2 : blobs) {
+                    for (Blob blob2 : blobs) {
                         if (blob2 != blob) {
                             // The distance between the local blob and the other blob:
                             double dist = calculateBlobDistance(world, blob, blob2);
@@ -225,7 +278,7 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
                             // 'part' is a number indicating how relevant this blob is for calculating
                             // the extraction cost. A big blob will have a big influence. If there is only
                             // one blob then this will be equal to 1.
-                            double part = (double) blob2.size() / blocks.size();
+                            double part = (double) blob2.members.size() / blocks.size();
 
                             // 'factor' indicates the cost of getting power out of blocks part of 'blob2'
                             // from the perspective of 'blob'.
@@ -237,41 +290,66 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
 
                     // This is the average cost for getting power out of blocks from this blob:
                     totalfactor /= blobs.size();
-
-                    // Set this to the coordinates of this blob
-                    for (GlobalCoordinate coordinate : blob) {
-                        costFactor.put(coordinate, (float) totalfactor);
-                    }
+                    blob.costFactor = (float) totalfactor;
                 }
             }
         }
-        private void getBlob(Set<GlobalCoordinate> todo, Set<GlobalCoordinate> blob, GlobalCoordinate coordinate) {
+
+        private void rebuildBlobs() {
+            blobOf = new HashMap<>();
+            for (GlobalCoordinate coordinate : blocks) {
+                addToBlobs(coordinate);
+            }
+            costFactorDirty = true;
+        }
+
+        // Put a new cell in a blob and merge all blobs that it connects
+        private void addToBlobs(GlobalCoordinate coordinate) {
+            Blob blob = new Blob(coordinate.getDimension());
             blob.add(coordinate);
+            blobOf.put(coordinate, blob);
             for (EnumFacing facing : EnumFacing.VALUES) {
                 GlobalCoordinate offset = new GlobalCoordinate(coordinate.getCoordinate().offset(facing), coordinate.getDimension());
-                if (todo.contains(offset)) {
-                    todo.remove(offset);
-                    getBlob(todo, blob, offset);
+                Blob other = blobOf.get(offset);
+                if (other != null && other != blob) {
+                    blob = merge(blob, other);
                 }
             }
         }
 
-        // Get all sets of cells that are connected to each other.
-        private void getBlobs(List<Set<GlobalCoordinate>> blobs) {
-            Set<GlobalCoordinate> todo = new HashSet<>(blocks);
-            while (!todo.isEmpty()) {
-                GlobalCoordinate coordinate = todo.iterator().next();
-                todo.remove(coordinate);
-                Set<GlobalCoordinate> blob = new HashSet<>();
-                getBlob(todo, blob, coordinate);
-                blobs.add(blob);
+        // Merge the smallest blob into the biggest one
+        private Blob merge(Blob blob1, Blob blob2) {
+            if (blob1.members.size() < blob2.members.size()) {
+                Blob b = blob1;
+                blob1 = blob2;
+                blob2 = b;
+            }
+            for (GlobalCoordinate c : blob2.members) {
+                blob1.add(c);
+                blobOf.put(c, blob1);
+            }
+            return blob1;
+        }
+
+        // A cell was removed. Its blob can be split in several blobs so we redo only that blob
+        private void removeFromBlobs(GlobalCoordinate coordinate) {
+            Blob blob = blobOf.remove(coordinate);
+            if (blob == null) {
+                return;
+            }
+            blob.members.remove(coordinate);
+            for (GlobalCoordinate c : blob.members) {
+                blobOf.remove(c);
+            }
+            for (GlobalCoordinate c : blob.members) {
+                addToBlobs(c);
             }
         }
 
         public float calculateCostFactor(World world, GlobalCoordinate g) {
             updateCostFactor(world);
-            Float f = costFactor.get(g);
-            return f == null ? 1.0f : f;
+            Blob blob = blobOf.get(g);
+            return blob == null ? 1.0f : blob.costFactor;
         }
 
         public int getEnergySingleBlock(boolean advanced, boolean simple) {
@@ -318,6 +396,41 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
             this.energy = energy;
         }
 
+        public void addInserted(int amount) {
+            tickInserted += amount;
+        }
+
+        public void addExtracted(int amount) {
+            tickExtracted += amount;
+        }
+
+        // Average RF/t inserted in this network (by all cells together)
+        public int getRfPerTickIn() {
+            return rfPerTickIn;
+        }
+
+        // Average RF/t extracted from this network (by all cells together)
+        public int getRfPerTickOut() {
+            return rfPerTickOut;
+        }
+
+        private boolean commitTick() {
+            boolean changed = tickInserted != 0 || tickExtracted != 0;
+            periodInserted += tickInserted;
+            periodExtracted += tickExtracted;
+            tickInserted = 0;
+            tickExtracted = 0;
+            periodTicks++;
+            if (periodTicks >= STATISTICS_TICKS) {
+                rfPerTickIn = (int) (periodInserted / periodTicks);
+                rfPerTickOut = (int) (periodExtracted / periodTicks);
+                periodInserted = 0;
+                periodExtracted = 0;
+                periodTicks = 0;
+            }
+            return changed;
+        }
+
         public void writeToNBT(NBTTagCompound tagCompound){
             tagCompound.setInteger("energy", energy);
             tagCompound.setInteger("advanced", advancedBlocks);
@@ -340,6 +453,8 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
             this.advancedBlocks = tagCompound.getInteger("advanced");
             this.simpleBlocks = tagCompound.getInteger("simple");
             blocks.clear();
+            blobOf = null;
+            maximumEnergy = -1;
             NBTTagList list = tagCompound.getTagList("blocks", Constants.NBT.TAG_COMPOUND);
             for (int i = 0 ; i < list.tagCount() ; i++) {
                 NBTTagCompound tag = list.getCompoundTagAt(i);
@@ -347,4 +462,37 @@ public class PowerCellNetwork extends AbstractWorldData<PowerCellNetwork> {
             }
         }
     }
+
+    // A set of connected power cells (always in the same dimension)
+    private static class Blob {
+        private final int dimension;
+        private final Set<GlobalCoordinate> members = new HashSet<>();
+        private long sumX = 0;
+        private long sumY = 0;
+        private long sumZ = 0;
+        private float costFactor = 1.0f;
+
+        public Blob(int dimension) {
+            this.dimension = dimension;
+        }
+
+        public void add(GlobalCoordinate c) {
+            members.add(c);
+            sumX += c.getCoordinate().getX();
+            sumY += c.getCoordinate().getY();
+            sumZ += c.getCoordinate().getZ();
+        }
+
+        public double getCenterX() {
+            return (double) sumX / members.size();
+        }
+
+        public double getCenterY() {
+            return (double) sumY / members.size();
+        }
+
+        public double getCenterZ() {
+            return (double) sumZ / members.size();
+        }
+    }
 }
@@ -15,6 +15,7 @@ import mcjty.lib.varia.BlockPosTools;
 import mcjty.lib.varia.EnergyTools;
 import mcjty.lib.varia.GlobalCoordinate;
 import mcjty.lib.varia.Logging;
+import mcjty.rftools.blocks.EnergyNeighbourCache;
 import mcjty.rftools.items.powercell.PowerCellCardItem;
 import net.darkhax.tesla.api.ITeslaConsumer;
 import net.darkhax.tesla.api.ITeslaHolder;
@@ -93,6 +94,7 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
             "The current RF/t input received by this block"};
 
     private InventoryHelper inventoryHelper = new InventoryHelper(this, PowerCellContainer.factory, 3);
+    private final EnergyNeighbourCache receivers = new EnergyNeighbourCache(this);
 
     private int networkId = -1;
 
@@ -104,12 +106,17 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
     // Total amount of energy inserted in this block (local or not)
     private long totalInserted = 0;
 
+    // RF/t statistics. Only used when this block is not part of a network. Otherwise
+    // the network keeps these for all cells together
     private int lastRfPerTickIn = 0;
     private int lastRfPerTickOut = 0;
     private int powerIn = 0;
     private int powerOut = 0;
     private long lastTime = 0;
 
+    // Set when energy was moved. markDirty() is called once per tick in update()
+    private boolean energyDirty = false;
+
     public enum Mode implements IStringSerializable {
         MODE_NONE("none"),
         MODE_INPUT("input"),   // Blue
@@ -150,8 +157,8 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
     @Override
     public String getData(int index, long millis) {
         switch (index) {
-            case 0: return lastRfPerTickOut + "RF/t";
-            case 1: return lastRfPerTickIn + "RF/t";
+            case 0: return getLastRfPerTickOut() + "RF/t";
+            case 1: return getLastRfPerTickIn() + "RF/t";
             case 2: return totalExtracted + "RF";
             case 3: return totalInserted + "RF";
         }
@@ -159,10 +166,18 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
     }
 
     public int getLastRfPerTickIn() {
+        if (networkId != -1 && !world.isRemote) {
+            PowerCellNetwork.Network network = getNetwork();
+            return network == null ? 0 : network.getRfPerTickIn();
+        }
         return lastRfPerTickIn;
     }
 
     public int getLastRfPerTickOut() {
+        if (networkId != -1 && !world.isRemote) {
+            PowerCellNetwork.Network network = getNetwork();
+            return network == null ? 0 : network.getRfPerTickOut();
+        }
         return lastRfPerTickOut;
     }
 
@@ -272,6 +287,11 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
     @Override
     public void update() {
         if (!getWorld().isRemote) {
+            if (energyDirty) {
+                energyDirty = false;
+                markDirty();
+            }
+
             long time = world.getTotalWorldTime();
             if (lastTime == 0) {
                 lastTime = time;
@@ -318,22 +338,31 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
         extractEnergyInternal(received, false, PowerCellConfiguration.CHARGEITEMPERTICK);
     }
 
+    // Called when a neighbouring block changed
+    public void invalidateReceivers() {
+        receivers.invalidate();
+    }
+
     private void sendOutEnergy() {
         int energyStored = getEnergyStored();
 
+        // These are the same for every side so only calculate them if there is a receiver
+        float factor = -1;
+        int rfPerTick = 0;
+
         for (EnumFacing face : EnumFacing.VALUES) {
             if (modes[face.ordinal()] == Mode.MODE_OUTPUT) {
-                BlockPos pos = getPos().offset(face);
-                TileEntity te = getWorld().getTileEntity(pos);
-                EnumFacing opposite = face.getOpposite();
-                if (EnergyTools.isEnergyTE(te, opposite)) {
+                TileEntity te = receivers.getReceiver(face);
+                if (te != null) {
                     // If the adjacent block is also a powercell then we only send energy if this cell is local or the other cell has a different id
                     if ((!(te instanceof PowerCellTileEntity)) || getNetworkId() == -1 || ((PowerCellTileEntity) te).getNetworkId() != getNetworkId()) {
-                        float factor = getCostFactor();
-                        int rfPerTick = getRfPerTickPerSide();
+                        if (factor < 0) {
+                            factor = getCostFactor();
+                            rfPerTick = getRfPerTickPerSide();
+                        }
                         int rfToGive = Math.min(rfPerTick, (int) (energyStored / factor));
 
-                        int received = (int) EnergyTools.receiveEnergy(te, opposite, rfToGive);
+                        int received = (int) receivers.sendEnergy(face, rfToGive);
 
                         energyStored -= extractEnergyInternal(received, false, Integer.MAX_VALUE);
                         if (energyStored <= 0) {
@@ -489,8 +518,10 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
         }
         if (!simulate) {
             totalInserted += received;
-            powerIn += received;
-            markDirty();
+            if (networkId == -1) {
+                powerIn += received;
+            }
+            energyDirty = true;
         }
         return received;
     }
@@ -505,8 +536,10 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
         int maxInsert = Math.min(totEnergy - network.getEnergy(), maxReceive);
         if (maxInsert > 0) {
             if (!simulate) {
+                // Recorded in the ledger here so that every caller does it. The network
+                // data is saved by PowerCellNetwork.commitTick()
                 maxInsert = network.receiveEnergy(maxInsert);
-                PowerCellNetwork.getChannels(getWorld()).save();
+                network.addInserted(maxInsert);
             }
         }
         return isCreative() ? maxReceive : maxInsert;
@@ -519,7 +552,7 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
         if (maxInsert > 0) {
             if (!simulate) {
                 energy += maxInsert;
-                markDirty();
+                energyDirty = true;
             }
         }
         return isCreative() ? maxReceive : maxInsert;
@@ -535,8 +568,10 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
         }
         if (!simulate) {
             totalExtracted += extracted;
-            powerOut += extracted;
-            markDirty();
+            if (networkId == -1) {
+                powerOut += extracted;
+            }
+            energyDirty = true;
         }
         return extracted;
     }
@@ -550,8 +585,10 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
             maxExtract = maximum;
         }
         if (!simulate) {
+            // Recorded in the ledger here so that every caller does it. The network
+            // data is saved by PowerCellNetwork.commitTick()
             maxExtract = network.extractEnergy(maxExtract);
-            PowerCellNetwork.getChannels(getWorld()).save();
+            network.addExtracted(maxExtract);
         }
         return maxExtract;
     }
@@ -566,7 +603,7 @@ public class PowerCellTileEntity extends GenericTileEntity implements IEnergyRec
         }
         if (!simulate) {
             energy -= maxExtract;
-            markDirty();
+            energyDirty = true;
         }
         return maxExtract;
     }
@@ -11,6 +11,7 @@ import mcjty.lib.typed.Type;
 import mcjty.lib.typed.TypedMap;
 import mcjty.lib.varia.EnergyTools;
 import mcjty.lib.varia.OrientationTools;
+import mcjty.rftools.blocks.EnergyNeighbourCache;
 import mcjty.theoneprobe.api.IProbeHitData;
 import mcjty.theoneprobe.api.IProbeInfo;
 import mcjty.theoneprobe.api.ProbeMode;
@@ -19,9 +20,9 @@ import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.ITickable;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.TextFormatting;
 import net.minecraft.world.World;
 import net.minecraftforge.common.capabilities.Capability;
@@ -83,6 +84,8 @@ public class RelayTileEntity extends GenericEnergyStorageTileEntity implements I
     private boolean[] inputModeOff = new boolean[] { false, false, false, false, false, false, false };
     private int rfOn[] = new int[] { 1000, 1000, 1000, 1000, 1000, 1000, 1000 };
     private int rfOff[] = new int[] { 0, 0, 0, 0, 0, 0, 0 };
+
+    private final EnergyNeighbourCache receivers = new EnergyNeighbourCache(this);
     public static final String DUNSWEI = "DUBFLRI";
 
     private int lastRfPerTickIn = 0;
@@ -95,6 +98,13 @@ public class RelayTileEntity extends GenericEnergyStorageTileEntity implements I
         super(MAXENERGY, RECEIVEPERTICK);
     }
 
+    @Override
+    public void checkRedstone(World world, BlockPos pos) {
+        super.checkRedstone(world, pos);
+        // Called when a neighbouring block changed
+        receivers.invalidate();
+    }
+
     @Override
     public void update() {
         if (!getWorld().isRemote) {
@@ -164,11 +174,9 @@ public class RelayTileEntity extends GenericEnergyStorageTileEntity implements I
             int side = OrientationTools.reorient(facing, state).ordinal();
 //            int side = facing.ordinal();
             if (rf[side] > 0 && !inputMode[side]) {
-                TileEntity te = getWorld().getTileEntity(getPos().offset(facing));
-                EnumFacing opposite = facing.getOpposite();
-                if (EnergyTools.isEnergyTE(te, opposite)) {
+                if (receivers.getReceiver(facing) != null) {
                     int rfToGive = (int) Math.min(rf[side], energyStored);
-                    int received = (int) EnergyTools.receiveEnergy(te, opposite, rfToGive);
+                    int received = (int) receivers.sendEnergy(facing, rfToGive);
 
                     powerOut += received;
                     energyStored -= storage.extractEnergy(received, false);
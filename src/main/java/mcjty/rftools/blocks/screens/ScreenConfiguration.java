@@ -26,6 +26,8 @@ public class ScreenConfiguration {
     public static int TEXT_RFPERTICK = 0;
     public static int STORAGE_CONTROL_RFPERTICK = 6;
     public static int SCREEN_REFRESH_TIMING = 500;
+    public static int SCREEN_DATA_TIMING = 500;
+    public static int SCREEN_DATA_RANGE = 64;
 
     public static boolean useTruetype = true;
     public static String font = "rftools:fonts/ubuntu.ttf";
@@ -84,6 +86,10 @@ public class ScreenConfiguration {
 
         SCREEN_REFRESH_TIMING = cfg.get(CATEGORY_SCREEN, "screenRefreshTiming", SCREEN_REFRESH_TIMING,
                 "How many times the screen will update. Higher numbers make the screens less accurate but better for network bandwidth").getInt();
+        SCREEN_DATA_TIMING = cfg.get(CATEGORY_SCREEN, "screenDataTiming", SCREEN_DATA_TIMING,
+                "Default time (in milliseconds) that the server keeps the data of a screen module before asking the module again. This data is shared between all players looking at a screen").getInt();
+        SCREEN_DATA_RANGE = cfg.get(CATEGORY_SCREEN, "screenDataRange", SCREEN_DATA_RANGE,
+                "Players within this distance of a screen get updates of the screen data sent to them").getInt();
     }
 
 }
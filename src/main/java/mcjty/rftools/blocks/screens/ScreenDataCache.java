@@ -0,0 +1,103 @@
+package mcjty.rftools.blocks.screens;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mcjty.rftools.RFTools;
+import mcjty.rftools.api.screens.IScreenDataHelper;
+import mcjty.rftools.api.screens.IScreenModule;
+import mcjty.rftools.api.screens.data.IModuleData;
+import net.minecraft.world.World;
+
+import java.util.*;
+
+/**
+ * Server side cache for the data of all modules in a screen. This data is shared by all
+ * players looking at the screen and a module is only asked for new data when its refresh
+ * timing has expired. The encoded form of the data is remembered so that only modules
+ * whose data actually changed have to be sent again.
+ */
+public class ScreenDataCache {
+
+    private final Map<Integer, IModuleData> data = new HashMap<>();
+    private final Map<Integer, byte[]> encoded = new HashMap<>();
+    private final Map<Integer, Long> lastUpdate = new HashMap<>();
+
+    // Players that already received the full data for this screen
+    private final Set<UUID> viewers = new HashSet<>();
+
+    public void clear() {
+        data.clear();
+        encoded.clear();
+        lastUpdate.clear();
+        viewers.clear();
+    }
+
+    /**
+     * Ask new data from all modules for which the cached data is too old.
+     * Returns a map with all module data that changed. A null value in that
+     * map means that the module no longer has data.
+     */
+    public Map<Integer, IModuleData> refresh(List<IScreenModule<?>> modules, IScreenDataHelper helper, World world, long millis) {
+        Map<Integer, IModuleData> changed = new HashMap<>();
+        int moduleIndex = 0;
+        for (IScreenModule<?> module : modules) {
+            if (module != null) {
+                int timing = module.getDataRefreshTiming();
+                if (timing < 0) {
+                    timing = ScreenConfiguration.SCREEN_DATA_TIMING;
+                }
+                Long last = lastUpdate.get(moduleIndex);
+                if (last == null || millis - last >= timing) {
+                    lastUpdate.put(moduleIndex, millis);
+                    IModuleData d = module.getData(helper, world, millis);
+                    update(moduleIndex, d, changed);
+                }
+            }
+            moduleIndex++;
+        }
+        return changed;
+    }
+
+    private void update(int moduleIndex, IModuleData d, Map<Integer, IModuleData> changed) {
+        if (d == null) {
+            if (data.remove(moduleIndex) != null) {
+                encoded.remove(moduleIndex);
+                changed.put(moduleIndex, null);
+            }
+            return;
+        }
+        byte[] bytes = encode(d);
+        if (!Arrays.equals(bytes, encoded.get(moduleIndex))) {
+            data.put(moduleIndex, d);
+            encoded.put(moduleIndex, bytes);
+            changed.put(moduleIndex, d);
+        }
+    }
+
+    private static byte[] encode(IModuleData d) {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(RFTools.screenModuleRegistry.getShortId(d.getId()));
+        d.writeToBuf(buf);
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+
+    public Map<Integer, IModuleData> getData() {
+        return data;
+    }
+
+    /**
+     * Forget all viewers that are not in the given set.
+     */
+    public void retainViewers(Set<UUID> current) {
+        viewers.retainAll(current);
+    }
+
+    /**
+     * Returns true if this is a new viewer (that still needs the full data)
+     */
+    public boolean addViewer(UUID uuid) {
+        return viewers.add(uuid);
+    }
+}
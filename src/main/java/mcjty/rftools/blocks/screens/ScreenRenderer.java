@@ -112,15 +112,19 @@ public class ScreenRenderer extends TileEntitySpecialRenderer<ScreenTileEntity>
     }
 
     private Map<Integer, IModuleData> updateScreenData(ScreenTileEntity screenTileEntity) {
-        long millis = System.currentTimeMillis();
-        if ((millis - screenTileEntity.lastTime > ScreenConfiguration.SCREEN_REFRESH_TIMING) && screenTileEntity.isNeedsServerData()) {
-            screenTileEntity.lastTime = millis;
-            GlobalCoordinate pos = new GlobalCoordinate(screenTileEntity.getPos(), screenTileEntity.getWorld().provider.getDimension());
-            RFToolsMessages.INSTANCE.sendToServer(new PacketGetScreenData(RFTools.MODID, pos, millis));
-        }
-
         GlobalCoordinate key = new GlobalCoordinate(screenTileEntity.getPos(), screenTileEntity.getWorld().provider.getDimension());
         Map<Integer,IModuleData> screenData = ScreenTileEntity.screenData.get(key);
+        // Normally the server pushes the data to all players near the screen. Only ask for
+        // it explicitly if we didn't get anything yet or if the pushes stopped
+        long millis = System.currentTimeMillis();
+        Long pushTime = ScreenTileEntity.screenDataPushTime.get(key);
+        boolean pushed = pushTime != null && millis - pushTime < ScreenConfiguration.SCREEN_REFRESH_TIMING * ScreenTileEntity.KEEPALIVE_FACTOR * 2;
+        if (screenData == null || !pushed) {
+            if ((millis - screenTileEntity.lastTime > ScreenConfiguration.SCREEN_REFRESH_TIMING) && screenTileEntity.isNeedsServerData()) {
+                screenTileEntity.lastTime = millis;
+                RFToolsMessages.INSTANCE.sendToServer(new PacketGetScreenData(RFTools.MODID, key, millis));
+            }
+        }
         if (screenData == null) {
             screenData = Collections.emptyMap();
         }
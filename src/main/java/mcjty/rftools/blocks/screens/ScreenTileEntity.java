@@ -19,6 +19,7 @@ import mcjty.rftools.blocks.screens.data.ModuleDataString;
 import mcjty.rftools.blocks.screens.modules.ComputerScreenModule;
 import mcjty.rftools.blocks.screens.modules.ScreenModuleHelper;
 import mcjty.rftools.blocks.screens.modulesclient.TextClientScreenModule;
+import mcjty.rftools.blocks.screens.network.PacketReturnScreenData;
 import mcjty.rftools.network.RFToolsMessages;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
@@ -63,6 +64,9 @@ public class ScreenTileEntity extends GenericTileEntity implements ITickable, De
 
     // This is a map that contains a map from the coordinate of the screen to a map of screen data from the server indexed by slot number,
     public static Map<GlobalCoordinate, Map<Integer, IModuleData>> screenData = new HashMap<>();
+    // Client side: the last time the server pushed (partial) data for a screen. If the server stops
+    // pushing (for example because we are out of screenDataRange) the client asks for the data itself
+    public static Map<GlobalCoordinate, Long> screenDataPushTime = new HashMap<>();
 
     // Cached client screen modules
     private List<IClientScreenModule<?>> clientScreenModules = null;
@@ -114,6 +118,18 @@ public class ScreenTileEntity extends GenericTileEntity implements ITickable, De
 
     public long lastTime = 0;
 
+    // The server sends an update at least every KEEPALIVE_FACTOR * screenRefreshTiming ms to
+    // players in range. Clients start asking for the data themselves after twice that time
+    public static final int KEEPALIVE_FACTOR = 4;
+
+    // Server side cache of the module data that is shared between all players viewing this screen
+    private final ScreenDataCache dataCache = new ScreenDataCache();
+    private long lastPushTime = 0;
+    private long lastSendTime = 0;
+    // Server side: true if a client asked for the data of this screen. Clients only do that if
+    // the screen has modules that need server data. Only then does the server push data
+    private boolean hasDataModules = false;
+
     public ScreenTileEntity() {
     }
 
@@ -160,6 +176,7 @@ public class ScreenTileEntity extends GenericTileEntity implements ITickable, De
     }
 
     private void checkStateServer() {
+        pushScreenData();
         if (clickedModules.isEmpty()) {
             return;
         }
@@ -221,6 +238,7 @@ public class ScreenTileEntity extends GenericTileEntity implements ITickable, De
     private void resetModules() {
         clientScreenModules = null;
         screenModules = null;
+        dataCache.clear();
         clickedModules.clear();
         showHelp = true;
         computerModules.clear();
@@ -580,6 +598,7 @@ public class ScreenTileEntity extends GenericTileEntity implements ITickable, De
         stack.setTagCompound(sanitizer.sanitizeNbt(tagCompound));
         screenModules = null;
         clientScreenModules = null;
+        dataCache.clear();
         computerModules.clear();
         markDirty();
     }
@@ -742,21 +761,55 @@ public class ScreenTileEntity extends GenericTileEntity implements ITickable, De
         }
     };
 
-    // This is called server side.
+    // This is called server side. The millis parameter is the time of the client and is
+    // not used: the data is cached based on server time so that it can be shared.
     public Map<Integer, IModuleData> getScreenData(long millis) {
-        Map<Integer, IModuleData> map = new HashMap<>();
-        List<IScreenModule<?>> screenModules = getScreenModules();
-        int moduleIndex = 0;
-        for (IScreenModule<?> module : screenModules) {
-            if (module != null) {
-                IModuleData data = module.getData(screenDataHelper, getWorld(), millis);
-                if (data != null) {
-                    map.put(moduleIndex, data);
-                }
+        hasDataModules = true;
+        dataCache.refresh(getScreenModules(), screenDataHelper, getWorld(), System.currentTimeMillis());
+        return new HashMap<>(dataCache.getData());
+    }
+
+    // Server side: send the data that changed to all players that are close enough to
+    // see this screen. Players that come into range get the full data. If nothing changed
+    // for a while an empty update is sent so that clients know the pushes didn't stop.
+    private void pushScreenData() {
+        if (!hasDataModules || !(powerOn || isCreative())) {
+            return;
+        }
+        long millis = System.currentTimeMillis();
+        if (millis - lastPushTime < ScreenConfiguration.SCREEN_REFRESH_TIMING) {
+            return;
+        }
+        lastPushTime = millis;
+
+        double maxDist = ScreenConfiguration.SCREEN_DATA_RANGE * ScreenConfiguration.SCREEN_DATA_RANGE;
+        List<EntityPlayerMP> players = new ArrayList<>();
+        Set<UUID> uuids = new HashSet<>();
+        for (EntityPlayer player : getWorld().playerEntities) {
+            if (player instanceof EntityPlayerMP && player.getDistanceSq(getPos()) <= maxDist) {
+                players.add((EntityPlayerMP) player);
+                uuids.add(player.getUniqueID());
+            }
+        }
+        dataCache.retainViewers(uuids);
+        if (players.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, IModuleData> changed = dataCache.refresh(getScreenModules(), screenDataHelper, getWorld(), millis);
+        GlobalCoordinate pos = new GlobalCoordinate(getPos(), getWorld().provider.getDimension());
+        PacketReturnScreenData delta = null;
+        if (!changed.isEmpty() || millis - lastSendTime >= ScreenConfiguration.SCREEN_REFRESH_TIMING * KEEPALIVE_FACTOR) {
+            delta = new PacketReturnScreenData(pos, changed, false);
+            lastSendTime = millis;
+        }
+        for (EntityPlayerMP player : players) {
+            if (dataCache.addViewer(player.getUniqueID())) {
+                RFToolsMessages.INSTANCE.sendTo(new PacketReturnScreenData(pos, new HashMap<>(dataCache.getData()), true), player);
+            } else if (delta != null) {
+                RFToolsMessages.INSTANCE.sendTo(delta, player);
             }
-            moduleIndex++;
         }
-        return map;
     }
 
     public IScreenModule<?> getHoveringModule() {
@@ -1,12 +1,29 @@
 package mcjty.rftools.blocks.screens.network;
 
+import mcjty.rftools.api.screens.data.IModuleData;
 import mcjty.rftools.blocks.screens.ScreenTileEntity;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @SideOnly(Side.CLIENT)
 public class PacketGetScreenDataHelper {
     public static void setScreenData(PacketReturnScreenData message) {
-        ScreenTileEntity.screenData.put(message.getPos(), message.getScreenData());
+        if (message.isFull()) {
+            ScreenTileEntity.screenData.put(message.getPos(), message.getScreenData());
+            return;
+        }
+        // Only the modules that changed are in this message. This is a push from the server
+        ScreenTileEntity.screenDataPushTime.put(message.getPos(), System.currentTimeMillis());
+        Map<Integer, IModuleData> data = ScreenTileEntity.screenData.computeIfAbsent(message.getPos(), p -> new HashMap<>());
+        for (Map.Entry<Integer, IModuleData> entry : message.getScreenData().entrySet()) {
+            if (entry.getValue() == null) {
+                data.remove(entry.getKey());
+            } else {
+                data.put(entry.getKey(), entry.getValue());
+            }
+        }
     }
 }
@@ -16,15 +16,22 @@ import java.util.Map;
 public class PacketReturnScreenData implements IMessage {
     private GlobalCoordinate pos;
     private Map<Integer, IModuleData> screenData;
+    // If false this only contains the modules that changed. A null value means the module has no data anymore
+    private boolean full;
 
     @Override
     public void fromBytes(ByteBuf buf) {
         pos = new GlobalCoordinate(NetworkTools.readPos(buf), buf.readInt());
+        full = buf.readBoolean();
         int size = buf.readInt();
         screenData = new HashMap<>(size);
         for (int i = 0 ; i < size ; i++) {
             int key = buf.readInt();
             int shortId = buf.readInt();
+            if (shortId == -1) {
+                screenData.put(key, null);
+                continue;
+            }
             String id = RFTools.screenModuleRegistry.getNormalId(shortId);
             IModuleDataFactory<?> dataFactory = RFTools.screenModuleRegistry.getModuleDataFactory(id);
             IModuleData data = dataFactory.createData(buf);
@@ -36,13 +43,18 @@ public class PacketReturnScreenData implements IMessage {
     public void toBytes(ByteBuf buf) {
         NetworkTools.writePos(buf, pos.getCoordinate());
         buf.writeInt(pos.getDimension());
+        buf.writeBoolean(full);
 
         buf.writeInt(screenData.size());
         for (Map.Entry<Integer, IModuleData> me : screenData.entrySet()) {
             buf.writeInt(me.getKey());
             IModuleData c = me.getValue();
-            buf.writeInt(RFTools.screenModuleRegistry.getShortId(c.getId()));
-            c.writeToBuf(buf);
+            if (c == null) {
+                buf.writeInt(-1);
+            } else {
+                buf.writeInt(RFTools.screenModuleRegistry.getShortId(c.getId()));
+                c.writeToBuf(buf);
+            }
         }
     }
 
@@ -57,9 +69,18 @@ public class PacketReturnScreenData implements IMessage {
         return screenData;
     }
 
+    public boolean isFull() {
+        return full;
+    }
+
     public PacketReturnScreenData(GlobalCoordinate pos, Map<Integer, IModuleData> screenData) {
+        this(pos, screenData, true);
+    }
+
+    public PacketReturnScreenData(GlobalCoordinate pos, Map<Integer, IModuleData> screenData, boolean full) {
         this.pos = pos;
         this.screenData = screenData;
+        this.full = full;
     }
 
     public static class Handler implements IMessageHandler<PacketReturnScreenData, IMessage> {
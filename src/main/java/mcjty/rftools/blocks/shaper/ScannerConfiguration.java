@@ -37,6 +37,8 @@ public class ScannerConfiguration {
 
     public static int surfaceAreaPerTick = 512*256*2;
     public static int planeSurfacePerTick = 200*200;
+    public static int shapeWorkerThreads = 2;
+    public static int scanCacheSize = 64 * 1024;
     public static int clientRenderDataTimeout = 10000;
 
     public static int projectorFlashTimeout = 400;
@@ -95,11 +97,17 @@ public class ScannerConfiguration {
                 "Maximum dimension of the shape when a scanner/projector card is used").getInt();
 
         surfaceAreaPerTick = cfg.get(CATEGORY_SCANNER, "surfaceAreaPerTick", surfaceAreaPerTick,
-                "The amount of surface area the scanner will scan in a tick. Increasing this will increase the speed of the scanner but cause more strain on the server",
+                "The amount of blocks the scanner will scan in a tick. Increasing this will increase the speed of the scanner but cause more strain on the server",
                 100, 32768*32768).getInt();
         planeSurfacePerTick = cfg.get(CATEGORY_SCANNER, "planeSurfacePerTick", planeSurfacePerTick,
                 "The amount of 'surface area' that the server will send to the client for the projector. Increasing this will increase the speed at which projections are ready but also increase the load for server and client",
                 100, 10000000).getInt();
+        shapeWorkerThreads = cfg.get(CATEGORY_SCANNER, "shapeWorkerThreads", shapeWorkerThreads,
+                "The number of background threads that calculate the shape data that is sent to the client for the projector and shape card GUI",
+                1, 16).getInt();
+        scanCacheSize = cfg.get(CATEGORY_SCANNER, "scanCacheSize", scanCacheSize,
+                "The amount of scan data (in kilobytes) that the server keeps in memory. Scans that were not used recently are removed from memory and read from disk again when needed",
+                256, 4*1024*1024).getInt();
         clientRenderDataTimeout = cfg.get(CATEGORY_SCANNER, "clientRenderDataTimeout", clientRenderDataTimeout,
                 "The amount of milliseconds before the client will remove shape render data that hasn't been used. Decreasing this will free memory faster at the cost of having to update shape renders more often",
                 100, 1000000).getInt();
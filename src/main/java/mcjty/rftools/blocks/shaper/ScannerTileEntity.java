@@ -18,7 +18,7 @@ import mcjty.rftools.items.storage.StorageFilterItem;
 import mcjty.rftools.shapes.ScanDataManager;
 import mcjty.rftools.shapes.Shape;
 import mcjty.rftools.shapes.StatePalette;
-import mcjty.rftools.varia.RLE;
+import mcjty.rftools.varia.VarRLE;
 import mcjty.theoneprobe.api.IProbeHitData;
 import mcjty.theoneprobe.api.IProbeInfo;
 import mcjty.theoneprobe.api.ProbeMode;
@@ -36,6 +36,8 @@ import net.minecraft.util.ITickable;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.TextFormatting;
 import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 import net.minecraftforge.common.DimensionManager;
 import net.minecraftforge.fml.common.Optional;
 import net.minecraftforge.fml.common.registry.ForgeRegistries;
@@ -111,11 +113,7 @@ public class ScannerTileEntity extends GenericEnergyReceiverTileEntity implement
             if (progress != null) {
                 if (getStoredPower() >= getEnergyPerTick()) {
                     consumeEnergy(getEnergyPerTick());
-                    int done = 0;
-                    while (progress != null && done < ScannerConfiguration.surfaceAreaPerTick) {
-                        progressScan();
-                        done += dataDim.getZ() * dataDim.getY();  // We scan planes on the x axis
-                    }
+                    progressScan(ScannerConfiguration.surfaceAreaPerTick);
                 }
             } else if (isMachineEnabled()) {
                 scan();
@@ -435,7 +433,7 @@ public class ScannerTileEntity extends GenericEnergyReceiverTileEntity implement
     private static class ScanProgress {
         List<ModifierEntry> modifiers;
         Map<IBlockState, IBlockState> modifierMapping;
-        RLE rle;
+        VarRLE rle;
         BlockPos tl;
         StatePalette materialPalette;
         BlockPos.MutableBlockPos mpos = new BlockPos.MutableBlockPos();
@@ -443,18 +441,22 @@ public class ScannerTileEntity extends GenericEnergyReceiverTileEntity implement
         int dimY;
         int dimZ;
         int x;
+        int z;
         int dimension;
+        // The palette color for every state that was seen
+        Map<IBlockState, Integer> colors = new HashMap<>();
     }
 
     private void startScanArea(BlockPos center, int dimension, int dimX, int dimY, int dimZ) {
         progress = new ScanProgress();
         progress.modifiers = ModifierItem.getModifiers(getStackInSlot(SLOT_MODIFIER));
         progress.modifierMapping = new HashMap<>();
-        progress.rle = new RLE();
+        progress.rle = new VarRLE();
         progress.tl = new BlockPos(center.getX() - dimX/2, center.getY() - dimY/2, center.getZ() - dimZ/2);
         progress.materialPalette = new StatePalette();
         progress.materialPalette.alloc(BuilderSetup.supportBlock.getDefaultState(), 0);
         progress.x = progress.tl.getX();
+        progress.z = progress.tl.getZ();
         progress.dimX = dimX;
         progress.dimY = dimY;
         progress.dimZ = dimZ;
@@ -462,7 +464,11 @@ public class ScannerTileEntity extends GenericEnergyReceiverTileEntity implement
         markDirtyClient();
     }
 
-    private void progressScan() {
+    /**
+     * Scan at most 'budget' blocks (whole columns at a time). Blocks are read directly from
+     * the chunk sections and the color for every distinct state is only calculated once
+     */
+    private void progressScan(int budget) {
         if (progress == null) {
             return;
         }
@@ -471,46 +477,77 @@ public class ScannerTileEntity extends GenericEnergyReceiverTileEntity implement
         int dimY = progress.dimY;
         int dimZ = progress.dimZ;
         World world = getScanWorld(progress.dimension);
-        BlockPos.MutableBlockPos mpos = progress.mpos;
-        for (int z = tl.getZ() ; z < tl.getZ() + dimZ ; z++) {
+        int oldPercentage = (progress.x - tl.getX()) * 100 / dimX;
+        Chunk chunk = null;
+        while (budget > 0) {
+            int x = progress.x;
+            int z = progress.z;
+            if (chunk == null || chunk.x != (x >> 4) || chunk.z != (z >> 4)) {
+                chunk = world.getChunkFromChunkCoords(x >> 4, z >> 4);
+            }
+            ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
             for (int y = tl.getY() ; y < tl.getY() + dimY ; y++) {
-                mpos.setPos(progress.x, y, z);
-                int c;
-                if (world.isAirBlock(mpos)) {
-                    c = 0;
+                IBlockState state;
+                if (y < 0 || y >= 256) {
+                    state = Blocks.AIR.getDefaultState();
                 } else {
-                    IBlockState state = world.getBlockState(mpos);
-                    getFilterCache();
-                    if (filterCache != null) {
-                        ItemStack item = state.getBlock().getItem(world, mpos, state);
-                        if (!filterCache.match(item)) {
-                            state = null;
-                        }
-                    }
-                    if (state != null && state != Blocks.AIR.getDefaultState()) {
-                        state = mapState(progress.modifiers, progress.modifierMapping, mpos, state);
-                    }
-                    if (state != null && state != Blocks.AIR.getDefaultState()) {
-                        c = progress.materialPalette.alloc(state, 0) + 1;
+                    ExtendedBlockStorage section = storage[y >> 4];
+                    if (section == Chunk.NULL_BLOCK_STORAGE) {
+                        state = Blocks.AIR.getDefaultState();
                     } else {
-                        c = 0;
+                        state = section.get(x & 15, y & 15, z & 15);
                     }
                 }
+                Integer c = progress.colors.get(state);
+                if (c == null) {
+                    progress.mpos.setPos(x, y, z);
+                    c = calculateColor(world, progress.mpos, state);
+                    progress.colors.put(state, c);
+                }
                 progress.rle.add(c);
             }
+            budget -= dimY;
+
+            progress.z++;
+            if (progress.z >= tl.getZ() + dimZ) {
+                progress.z = tl.getZ();
+                progress.x++;
+                if (progress.x >= tl.getX() + dimX) {
+                    stopScanArea();
+                    return;
+                }
+            }
         }
-        progress.x++;
-        if (progress.x >= tl.getX() + dimX) {
-            stopScanArea();
-        } else {
+        if ((progress.x - tl.getX()) * 100 / dimX != oldPercentage) {
             markDirtyClient();
         }
     }
 
+    // The palette color (0 for nothing) for a state. Filter and modifiers are only tested for the first position that has this state
+    private int calculateColor(World world, BlockPos pos, IBlockState state) {
+        if (state.getBlock().isAir(state, world, pos)) {
+            return 0;
+        }
+        getFilterCache();
+        if (filterCache != null) {
+            ItemStack item = state.getBlock().getItem(world, pos, state);
+            if (!filterCache.match(item)) {
+                return 0;
+            }
+        }
+        if (state != Blocks.AIR.getDefaultState()) {
+            state = mapState(progress.modifiers, progress.modifierMapping, pos, state);
+        }
+        if (state != null && state != Blocks.AIR.getDefaultState()) {
+            return progress.materialPalette.alloc(state, 0) + 1;
+        }
+        return 0;
+    }
+
     private void stopScanArea() {
         this.dataDim = new BlockPos(progress.dimX, progress.dimY, progress.dimZ);
         ScanDataManager scan = ScanDataManager.getScans();
-        scan.getOrCreateScan(getScanId()).setData(progress.rle.getData(), progress.materialPalette.getPalette(), dataDim, dataOffset);
+        scan.getOrCreateScan(getScanId()).setData(progress.rle.toByteArray(), progress.materialPalette.getPalette(), dataDim, dataOffset);
         scan.save(getScanId());
         if (renderStack.isEmpty()) {
             renderStack = new ItemStack(BuilderSetup.shapeCardItem);
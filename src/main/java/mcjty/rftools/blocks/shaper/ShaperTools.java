@@ -30,7 +30,7 @@ public class ShaperTools {
     }
 
     public static void requestScanDirty(EntityPlayer player, int scanId) {
-        int counter = ScanDataManager.getScans().loadScan(scanId).getDirtyCounter();
+        int counter = ScanDataManager.getScans().getDirtyCounter(scanId);
         RFToolsMessages.sendToClient(player, ClientCommandHandler.CMD_RETURN_SCAN_DIRTY,
                 TypedMap.builder().put(ClientCommandHandler.PARAM_SCANID, scanId).put(ClientCommandHandler.PARAM_COUNTER, counter));
     }
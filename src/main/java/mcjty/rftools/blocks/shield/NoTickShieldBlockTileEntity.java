@@ -6,7 +6,6 @@ import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.network.NetworkManager;
 import net.minecraft.network.play.server.SPacketUpdateTileEntity;
 import net.minecraft.tileentity.TileEntity;
-import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
@@ -28,8 +27,6 @@ public class NoTickShieldBlockTileEntity extends TileEntity {
     // Coordinate of the shield block.
     protected BlockPos shieldBlock;
 
-    protected AxisAlignedBB beamBox = null;
-
     @Override
     public boolean shouldRefresh(World world, BlockPos pos, IBlockState oldState, IBlockState newSate) {
         return oldState.getBlock() != newSate.getBlock();
@@ -91,6 +88,27 @@ public class NoTickShieldBlockTileEntity extends TileEntity {
         markDirtyClient();
     }
 
+    /**
+     * Set all data for this shield block at once so that the client only has to be notified once
+     */
+    public void setShieldData(int camoId, int meta, int hasTe, BlockPos shieldBlock, int damageBits, int collisionData,
+                              int shieldColor, ShieldRenderingMode shieldRenderingMode) {
+        this.camoId = camoId;
+        this.camoMeta = meta;
+        this.hasTe = hasTe;
+        if (camoId == -1) {
+            mimic = null;
+        } else {
+            mimic = Block.getBlockById(camoId).getStateFromMeta(meta);
+        }
+        this.shieldBlock = shieldBlock;
+        this.damageBits = damageBits;
+        this.collisionData = collisionData;
+        this.shieldColor = shieldColor;
+        this.shieldRenderingMode = shieldRenderingMode;
+        markDirtyClient();
+    }
+
     public void setShieldBlock(BlockPos c) {
         shieldBlock = c;
         markDirtyClient();
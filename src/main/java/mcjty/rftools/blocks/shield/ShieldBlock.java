@@ -149,6 +149,8 @@ public class ShieldBlock extends GenericRFToolsBlock<ShieldTEBase, ShieldContain
                 if (shieldTileEntity.isShieldComposed()) {
                     shieldTileEntity.decomposeShield();
                 }
+                // The projector is going away so it can't spread the work over the next ticks
+                shieldTileEntity.finishDecompose();
             }
         }
 
@@ -0,0 +1,100 @@
+package mcjty.rftools.blocks.shield;
+
+import mcjty.rftools.varia.PositionMap;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of the (absolute) positions of all blocks in a shield. The positions are kept in
+ * a bitset per 16x16x16 chunk section so that testing a position is cheap. Also keeps the
+ * bounding box of the whole shield.
+ */
+class ShieldBlockIndex {
+
+    private final Map<Long, BitSet> sections = new HashMap<>();
+
+    private int minX = Integer.MAX_VALUE;
+    private int minY = Integer.MAX_VALUE;
+    private int minZ = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE;
+    private int maxY = Integer.MIN_VALUE;
+    private int maxZ = Integer.MIN_VALUE;
+
+    public ShieldBlockIndex(BlockPos center, PositionMap blocks) {
+        for (int i = 0 ; i < blocks.getSlots() ; i++) {
+            if (blocks.isUsed(i)) {
+                add(center.getX() + blocks.getX(i), center.getY() + blocks.getY(i), center.getZ() + blocks.getZ(i));
+            }
+        }
+    }
+
+    private static long sectionKey(int x, int y, int z) {
+        return ((long) (x >> 4) & 0x3fffff) << 42 | ((long) (y >> 4) & 0xfffff) << 22 | ((long) (z >> 4) & 0x3fffff);
+    }
+
+    private static int sectionIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private void add(int x, int y, int z) {
+        sections.computeIfAbsent(sectionKey(x, y, z), k -> new BitSet(4096)).set(sectionIndex(x, y, z));
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        minZ = Math.min(minZ, z);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+        maxZ = Math.max(maxZ, z);
+    }
+
+    public boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    public boolean contains(int x, int y, int z) {
+        BitSet bits = sections.get(sectionKey(x, y, z));
+        return bits != null && bits.get(sectionIndex(x, y, z));
+    }
+
+    /**
+     * The area in which entities get damaged: the union of the damage boxes of all blocks
+     */
+    public AxisAlignedBB getDamageBox() {
+        return new AxisAlignedBB(minX - .4, minY - .4, minZ - .4, maxX + 1.4, maxY + 2.0, maxZ + 1.4);
+    }
+
+    /**
+     * Test if the box of the entity touches the damage box of at least one shield block. The
+     * damage box of a block at x,y,z is x-.4,y-.4,z-.4 to x+1.4,y+2,z+1.4
+     */
+    public boolean touches(AxisAlignedBB box) {
+        int x1 = Math.max(minX, (int) Math.floor(box.minX - 1.4));
+        int x2 = Math.min(maxX, (int) Math.ceil(box.maxX + .4));
+        int y1 = Math.max(minY, (int) Math.floor(box.minY - 2.0));
+        int y2 = Math.min(maxY, (int) Math.ceil(box.maxY + .4));
+        int z1 = Math.max(minZ, (int) Math.floor(box.minZ - 1.4));
+        int z2 = Math.min(maxZ, (int) Math.ceil(box.maxZ + .4));
+        for (int x = x1 ; x <= x2 ; x++) {
+            if (x - .4 >= box.maxX || x + 1.4 <= box.minX) {
+                continue;
+            }
+            for (int y = y1 ; y <= y2 ; y++) {
+                if (y - .4 >= box.maxY || y + 2.0 <= box.minY) {
+                    continue;
+                }
+                for (int z = z1 ; z <= z2 ; z++) {
+                    if (z - .4 >= box.maxZ || z + 1.4 <= box.minZ) {
+                        continue;
+                    }
+                    if (contains(x, y, z)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
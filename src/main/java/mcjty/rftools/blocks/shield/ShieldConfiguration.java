@@ -38,6 +38,9 @@ public class ShieldConfiguration {
     // If false invisible shield rendering mode is not allowed
     public static boolean allowInvisibleShield = true;
 
+    // Maximum number of shield blocks that are placed or removed in a single tick
+    public static int shieldBlocksPerTick = 1000;
+
     public static void init(Configuration cfg) {
         MAXENERGY = cfg.get(CATEGORY_SHIELD, "shieldMaxRF", MAXENERGY,
                 "Maximum RF storage that the shield block can hold").getInt();
@@ -67,6 +70,9 @@ public class ShieldConfiguration {
                 "Set this to true if you have a corrupted world due to a bad camo block in the shield system. Load your world, remove the offending block from the shield, exit MC and then set this back to false").getBoolean();
         allowInvisibleShield = cfg.get(CATEGORY_SHIELD, "allowInvisibleShield", allowInvisibleShield,
                 "Set this to false if you don't want invisible shield rendering mode to be possible").getBoolean();
+        shieldBlocksPerTick = cfg.get(CATEGORY_SHIELD, "shieldBlocksPerTick", shieldBlocksPerTick,
+                "The maximum number of shield blocks that a shield projector will place or remove in a single tick. Big shields are formed over several ticks",
+                1, 1000000).getInt();
         shardsPerLootingKill = cfg.get(CATEGORY_SHIELD, "shardsPerLootingKill", shardsPerLootingKill,
                 "Amount of dimensional shards per looting kill. Remember that this is per block that does damage").getInt();
         lootingKillBonus = cfg.get(CATEGORY_SHIELD, "lootingKillBonus", lootingKillBonus,
@@ -23,11 +23,15 @@ import mcjty.rftools.blocks.environmental.EnvironmentalSetup;
 import mcjty.rftools.blocks.shield.filters.*;
 import mcjty.rftools.items.ModItems;
 import mcjty.rftools.items.builder.ShapeCardItem;
+import mcjty.rftools.shapes.IBlockCollector;
 import mcjty.rftools.shapes.Shape;
+import mcjty.rftools.varia.PositionMap;
 import net.minecraft.block.Block;
 import net.minecraft.block.material.Material;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
+import net.minecraft.entity.monster.IMob;
+import net.minecraft.entity.passive.IAnimals;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.init.Blocks;
@@ -119,8 +123,29 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
 
     private ShieldRenderingMode shieldRenderingMode = ShieldRenderingMode.MODE_SHIELD;
 
-    private List<RelCoordinateShield> shieldBlocks = new ArrayList<>();
-    private List<IBlockState> blockStateTable = new ArrayList<>();
+    private final PositionMap shieldBlocks = new PositionMap();
+    private final List<IBlockState> blockStateTable = new ArrayList<>();
+    private final Map<IBlockState, Integer> blockStateIndex = new HashMap<>();
+
+    // Packed coordinates (see PositionMap) of the shield blocks that updateShield() still has to
+    // handle. Sorted by chunk section. Null if there is nothing to do
+    private long[] pendingUpdate = null;
+    private int pendingUpdateIndex = 0;
+
+    // Blocks that still have to be turned back into template blocks after the shield was decomposed
+    private final PositionMap decomposing = new PositionMap();
+    private IBlockState decomposeTemplate = Blocks.AIR.getDefaultState();
+    private boolean decomposeShaped = false;
+    private long[] pendingDecompose = null;     // Sorted version of 'decomposing'. Null if it has to be calculated
+    private int pendingDecomposeIndex = 0;
+
+    // Index of the shield blocks for damaging entities. Rebuilt when needed (null if it has to be rebuilt)
+    private ShieldBlockIndex blockIndex = null;
+    // Damage timer is not saved with the TE as it is not needed.
+    private int damageTimer = 10;
+    // Cached filter decisions for damaging entities. Cleared when the filters change
+    private final Map<Class<?>, Boolean> damageForClass = new HashMap<>();
+    private final Map<String, Boolean> damageForPlayer = new HashMap<>();
 
     private InventoryHelper inventoryHelper = new InventoryHelper(this, ShieldContainer.factory, ShieldContainer.BUFFER_SIZE);
 
@@ -294,11 +319,13 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
 
     private void delFilter(int selected) {
         filters.remove(selected);
+        filtersChanged();
         updateShield();
         markDirtyClient();
     }
 
     private void upFilter(int selected) {
+        filtersChanged();
         ShieldFilter filter1 = filters.get(selected-1);
         ShieldFilter filter2 = filters.get(selected);
         filters.set(selected - 1, filter2);
@@ -307,6 +334,7 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
     }
 
     private void downFilter(int selected) {
+        filtersChanged();
         ShieldFilter filter1 = filters.get(selected);
         ShieldFilter filter2 = filters.get(selected+1);
         filters.set(selected, filter2);
@@ -325,10 +353,16 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
         } else {
             filters.add(selected, filter);
         }
+        filtersChanged();
         updateShield();
         markDirtyClient();
     }
 
+    private void filtersChanged() {
+        damageForClass.clear();
+        damageForPlayer.clear();
+    }
+
     public DamageTypeMode getDamageMode() {
         return damageMode;
     }
@@ -558,10 +592,25 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
     @Override
     public void update() {
         if (!getWorld().isRemote) {
+            processPendingBlocks();
             checkStateServer();
         }
     }
 
+    /**
+     * Place or remove at most ShieldConfiguration.shieldBlocksPerTick blocks from the shield.
+     * Blocks are handled chunk section by chunk section.
+     */
+    private void processPendingBlocks() {
+        int budget = ShieldConfiguration.shieldBlocksPerTick;
+        if (!decomposing.isEmpty()) {
+            budget = processDecompose(budget);
+        }
+        if (pendingUpdate != null && budget > 0) {
+            processUpdate(budget);
+        }
+    }
+
     private void checkStateServer() {
         if (!shieldComposed) {
             // do nothing if the shield is not composed
@@ -606,6 +655,73 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
             updateShield();
             markDirty();
         }
+
+        if (shieldActive) {
+            handleDamage();
+        }
+    }
+
+    private void handleDamage() {
+        damageTimer--;
+        if (damageTimer > 0) {
+            return;
+        }
+        damageTimer = 10;
+
+        int damageBits = calculateDamageBits();
+        if (damageBits == 0 || shieldBlocks.isEmpty()) {
+            return;
+        }
+        if (blockIndex == null) {
+            blockIndex = new ShieldBlockIndex(getPos(), shieldBlocks);
+        }
+
+        // One query for the whole shield. Every entity is then tested against the index
+        List<Entity> l = getWorld().getEntitiesWithinAABB(Entity.class, blockIndex.getDamageBox());
+        for (Entity entity : l) {
+            if (checkEntityDamage(entity, damageBits) && blockIndex.touches(entity.getEntityBoundingBox())) {
+                applyDamageToEntity(entity);
+            }
+        }
+    }
+
+    private boolean checkEntityDamage(Entity entity, int damageBits) {
+        if ((damageBits & AbstractShieldBlock.META_HOSTILE) != 0 && entity instanceof IMob) {
+            return damageForClass.computeIfAbsent(entity.getClass(), c -> checkFilterDamage(HostileFilter.HOSTILE));
+        } else if ((damageBits & AbstractShieldBlock.META_PASSIVE) != 0 && entity instanceof IAnimals) {
+            return damageForClass.computeIfAbsent(entity.getClass(), c -> checkFilterDamage(AnimalFilter.ANIMAL));
+        } else if ((damageBits & AbstractShieldBlock.META_PLAYERS) != 0 && entity instanceof EntityPlayer) {
+            return damageForPlayer.computeIfAbsent(entity.getName(), this::checkPlayerDamage);
+        }
+        return false;
+    }
+
+    private boolean checkFilterDamage(String filterName) {
+        for (ShieldFilter filter : filters) {
+            if (DefaultFilter.DEFAULT.equals(filter.getFilterName())) {
+                return ((filter.getAction() & ShieldFilter.ACTION_DAMAGE) != 0);
+            } else if (filterName.equals(filter.getFilterName())) {
+                return ((filter.getAction() & ShieldFilter.ACTION_DAMAGE) != 0);
+            }
+        }
+        return false;
+    }
+
+    private boolean checkPlayerDamage(String playerName) {
+        for (ShieldFilter filter : filters) {
+            if (DefaultFilter.DEFAULT.equals(filter.getFilterName())) {
+                return ((filter.getAction() & ShieldFilter.ACTION_DAMAGE) != 0);
+            } else if (PlayerFilter.PLAYER.equals(filter.getFilterName())) {
+                PlayerFilter playerFilter = (PlayerFilter) filter;
+                String name = playerFilter.getName();
+                if ((name == null || name.isEmpty())) {
+                    return ((filter.getAction() & ShieldFilter.ACTION_DAMAGE) != 0);
+                } else if (name.equals(playerName)) {
+                    return ((filter.getAction() & ShieldFilter.ACTION_DAMAGE) != 0);
+                }
+            }
+        }
+        return false;
     }
 
     private int getRfPerTick() {
@@ -625,10 +741,15 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
     }
 
     public void composeShield(boolean ctrl) {
+        // The template blocks of a previous decompose must be back before we can look for them
+        finishDecompose();
         shieldBlocks.clear();
-        blockStateTable.clear();
-        Map<BlockPos, IBlockState> coordinates;
+        clearBlockStates();
+        blockIndex = null;
 
+        int xCoord = getPos().getX();
+        int yCoord = getPos().getY();
+        int zCoord = getPos().getZ();
         if (isShapedShield()) {
             // Special shaped mode.
             templateState = Blocks.AIR.getDefaultState();
@@ -638,44 +759,43 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
             boolean solid = ShapeCardItem.isSolid(shapeItem);
             BlockPos dimension = ShapeCardItem.getClampedDimension(shapeItem, ShieldConfiguration.maxShieldDimension);
             BlockPos offset = ShapeCardItem.getClampedOffset(shapeItem, ShieldConfiguration.maxShieldOffset);
-            Map<BlockPos, IBlockState> col = new HashMap<>();
-            ShapeCardItem.composeFormula(shapeItem, shape.getFormulaFactory().get(), getWorld(), getPos(), dimension, offset, col, supportedBlocks, solid, false, null);
-            coordinates = col;
+            ShapeCardItem.composeFormula(shapeItem, shape.getFormulaFactory().get(), getWorld(), getPos(), dimension, offset, new IBlockCollector() {
+                @Override
+                public int size() {
+                    return shieldBlocks.size();
+                }
+
+                @Override
+                public void add(int x, int y, int z, IBlockState state) {
+                    shieldBlocks.add(x - xCoord, y - yCoord, z - zCoord, state == null ? -1 : getBlockStateId(state));
+                }
+            }, supportedBlocks, solid, false, null);
         } else {
             if(!findTemplateState()) return;
 
-            Map<BlockPos, IBlockState> col = new HashMap<>();
-            findTemplateBlocks(col, templateState, ctrl, getPos());
-            coordinates = col;
-        }
-
-        int xCoord = getPos().getX();
-        int yCoord = getPos().getY();
-        int zCoord = getPos().getZ();
-        for (Map.Entry<BlockPos, IBlockState> entry : coordinates.entrySet()) {
-            BlockPos c = entry.getKey();
-            IBlockState state = entry.getValue();
-            int st = -1;
-            if (state != null) {
-                for (int i = 0; i < blockStateTable.size(); i++) {
-                    if (state.equals(blockStateTable.get(i))) {
-                        st = i;
-                        break;
-                    }
-                }
-                if (st == -1) {
-                    st = blockStateTable.size();
-                    blockStateTable.add(state);
-                }
-            }
-            shieldBlocks.add(new RelCoordinateShield(c.getX() - xCoord, c.getY() - yCoord, c.getZ() - zCoord, st));
-            getWorld().setBlockToAir(c);
+            findTemplateBlocks(shieldBlocks, templateState, ctrl, getPos());
         }
+        // The template blocks are replaced (or removed) by updateShield()
 
         shieldComposed = true;
         updateShield();
     }
 
+    private int getBlockStateId(IBlockState state) {
+        Integer id = blockStateIndex.get(state);
+        if (id == null) {
+            id = blockStateTable.size();
+            blockStateTable.add(state);
+            blockStateIndex.put(state, id);
+        }
+        return id;
+    }
+
+    private void clearBlockStates() {
+        blockStateTable.clear();
+        blockStateIndex.clear();
+    }
+
     private boolean isShapedShield() {
         return !inventoryHelper.getStackInSlot(ShieldContainer.SLOT_SHAPE).isEmpty();
     }
@@ -717,9 +837,9 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
                 Logging.message(player, TextFormatting.YELLOW + "You cannot add template blocks to a shaped shield (using a shape card)!");
                 return;
             }
-            Map<BlockPos, IBlockState> templateBlocks = new HashMap<>();
+            PositionMap templateBlocks = new PositionMap();
             IBlockState state = getWorld().getBlockState(pos);
-            templateBlocks.put(pos, null);
+            templateBlocks.add(pos.getX() - xCoord, pos.getY() - yCoord, pos.getZ() - zCoord);
             findTemplateBlocks(templateBlocks, state, false, pos);
 
             int[] camoId = calculateCamoId();
@@ -727,15 +847,15 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
             int damageBits = calculateDamageBits();
             Block block = calculateShieldBlock(damageBits, camoId, blockLight);
 
-            for (Map.Entry<BlockPos, IBlockState> entry : templateBlocks.entrySet()) {
-                BlockPos templateBlock = entry.getKey();
-                RelCoordinateShield relc = new RelCoordinateShield(templateBlock.getX() - xCoord, templateBlock.getY() - yCoord, templateBlock.getZ() - zCoord, -1);
-                shieldBlocks.add(relc);
-                updateShieldBlock(camoId, cddata, damageBits, block, relc);
-            }
+            templateBlocks.forEach((dx, dy, dz, value) -> {
+                shieldBlocks.add(dx, dy, dz, -1);
+                blockIndex = null;
+                updateShieldBlock(camoId, cddata, damageBits, block, dx, dy, dz, -1);
+            });
         } else if (origBlock instanceof AbstractShieldBlock) {
             //@todo
-            shieldBlocks.remove(new RelCoordinate(pos.getX() - xCoord, pos.getY() - yCoord, pos.getZ() - zCoord));
+            shieldBlocks.remove(pos.getX() - xCoord, pos.getY() - yCoord, pos.getZ() - zCoord);
+            blockIndex = null;
             getWorld().setBlockState(pos, templateState, 2);
         } else {
             Logging.message(player, TextFormatting.YELLOW + "The selected shield can't do anything with this block!");
@@ -745,9 +865,16 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
     }
 
     /**
-     * Update all shield blocks. Possibly creating the shield.
+     * Update all shield blocks. Possibly creating the shield. The actual work is spread over
+     * the next ticks (see processPendingBlocks())
      */
     private void updateShield() {
+        pendingUpdate = shieldBlocks.getKeysBySection(getPos());
+        pendingUpdateIndex = 0;
+        markDirtyClient();
+    }
+
+    private int processUpdate(int budget) {
         int[] camoId = calculateCamoId();
         int cddata = calculateShieldCollisionData();
         int damageBits = calculateDamageBits();
@@ -756,25 +883,41 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
         int yCoord = getPos().getY();
         int zCoord = getPos().getZ();
         BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
-        for (RelCoordinateShield c : shieldBlocks) {
+        while (budget > 0 && pendingUpdateIndex < pendingUpdate.length) {
+            long key = pendingUpdate[pendingUpdateIndex++];
+            int slot = shieldBlocks.findKey(key);
+            if (slot == -1) {
+                // Removed from the shield in the mean time
+                continue;
+            }
+            budget--;
+            int dx = PositionMap.unpackX(key);
+            int dy = PositionMap.unpackY(key);
+            int dz = PositionMap.unpackZ(key);
             if (Blocks.AIR.equals(block)) {
-                pos.setPos(xCoord + c.getDx(), yCoord + c.getDy(), zCoord + c.getDz());
-                IBlockState oldState = getWorld().getBlockState(pos);
-                if (oldState.getBlock() instanceof AbstractShieldBlock) {
-                    getWorld().setBlockToAir(pos);
+                pos.setPos(xCoord + dx, yCoord + dy, zCoord + dz);
+                Block oldBlock = getWorld().getBlockState(pos).getBlock();
+                // Template blocks can still be there if the shield was just composed
+                if (oldBlock instanceof AbstractShieldBlock || oldBlock == ShieldSetup.shieldTemplateBlock) {
+                    getWorld().setBlockState(pos, Blocks.AIR.getDefaultState(), 2);
                 }
             } else {
-                updateShieldBlock(camoId, cddata, damageBits, block, c);
+                updateShieldBlock(camoId, cddata, damageBits, block, dx, dy, dz, shieldBlocks.getValue(slot));
             }
         }
-        markDirtyClient();
+        if (pendingUpdateIndex >= pendingUpdate.length) {
+            pendingUpdate = null;
+            pendingUpdateIndex = 0;
+        }
+        markDirty();
+        return budget;
     }
 
-    private void updateShieldBlock(int[] camoId, int cddata, int damageBits, Block block, RelCoordinateShield c) {
+    private void updateShieldBlock(int[] camoId, int cddata, int damageBits, Block block, int dx, int dy, int dz, int st) {
         int xCoord = getPos().getX();
         int yCoord = getPos().getY();
         int zCoord = getPos().getZ();
-        BlockPos pp = new BlockPos(xCoord + c.getDx(), yCoord + c.getDy(), zCoord + c.getDz());
+        BlockPos pp = new BlockPos(xCoord + dx, yCoord + dy, zCoord + dz);
         IBlockState oldState = getWorld().getBlockState(pp);
         if ((!oldState.getBlock().isReplaceable(getWorld(), pp)) && oldState.getBlock() != ShieldSetup.shieldTemplateBlock) {
             return;
@@ -783,47 +926,92 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
         TileEntity te = getWorld().getTileEntity(pp);
         if (te instanceof NoTickShieldBlockTileEntity) {
             NoTickShieldBlockTileEntity shieldBlockTileEntity = (NoTickShieldBlockTileEntity) te;
-            if (c.getState() != -1) {
-                IBlockState state = blockStateTable.get(c.getState());
+            int id = camoId[0];
+            int meta = camoId[1];
+            int hasTe = camoId[2];
+            if (st != -1) {
+                IBlockState state = blockStateTable.get(st);
                 // @todo VERY DIRTY! Don't use ID
-                int id = Block.getIdFromBlock(state.getBlock());
-                shieldBlockTileEntity.setCamoBlock(id, state.getBlock().getMetaFromState(state), 0);
-            } else {
-                shieldBlockTileEntity.setCamoBlock(camoId[0], camoId[1], camoId[2]);
+                id = Block.getIdFromBlock(state.getBlock());
+                meta = state.getBlock().getMetaFromState(state);
+                hasTe = 0;
             }
-            shieldBlockTileEntity.setShieldBlock(getPos());
-            shieldBlockTileEntity.setDamageBits(damageBits);
-            shieldBlockTileEntity.setCollisionData(cddata);
-            shieldBlockTileEntity.setShieldColor(shieldColor);
-            shieldBlockTileEntity.setShieldRenderingMode(shieldRenderingMode);
+            shieldBlockTileEntity.setShieldData(id, meta, hasTe, getPos(), damageBits, cddata, shieldColor, shieldRenderingMode);
         }
     }
 
+    /**
+     * Break down the shield. The shield blocks are turned back into template blocks over
+     * the next ticks (see processPendingBlocks())
+     */
     public void decomposeShield() {
+        // Blocks from an earlier decompose that are still pending must use that template
+        finishDecompose();
+        for (int i = 0 ; i < shieldBlocks.getSlots() ; i++) {
+            if (shieldBlocks.isUsed(i)) {
+                decomposing.add(shieldBlocks.getX(i), shieldBlocks.getY(i), shieldBlocks.getZ(i), -1);
+            }
+        }
+        decomposeTemplate = templateState;
+        decomposeShaped = isShapedShield();
+        pendingDecompose = null;
+        pendingUpdate = null;
+        pendingUpdateIndex = 0;
+
+        shieldComposed = false;
+        shieldActive = false;
+        shieldBlocks.clear();
+        clearBlockStates();
+        blockIndex = null;
+        markDirtyClient();
+    }
+
+    /**
+     * Immediately finish a pending decompose. Used when the shield projector is broken.
+     */
+    public void finishDecompose() {
+        if (!decomposing.isEmpty()) {
+            processDecompose(Integer.MAX_VALUE);
+        }
+    }
+
+    private int processDecompose(int budget) {
+        if (pendingDecompose == null) {
+            pendingDecompose = decomposing.getKeysBySection(getPos());
+            pendingDecomposeIndex = 0;
+        }
         int xCoord = getPos().getX();
         int yCoord = getPos().getY();
         int zCoord = getPos().getZ();
         BlockPos.MutableBlockPos pp = new BlockPos.MutableBlockPos();
-        for (RelCoordinate c : shieldBlocks) {
-            int cx = xCoord + c.getDx();
-            int cy = yCoord + c.getDy();
-            int cz = zCoord + c.getDz();
+        while (budget > 0 && pendingDecomposeIndex < pendingDecompose.length) {
+            long key = pendingDecompose[pendingDecomposeIndex++];
+            budget--;
+            int dx = PositionMap.unpackX(key);
+            int dy = PositionMap.unpackY(key);
+            int dz = PositionMap.unpackZ(key);
+            decomposing.remove(dx, dy, dz);
+            int cx = xCoord + dx;
+            int cy = yCoord + dy;
+            int cz = zCoord + dz;
             pp.setPos(cx, cy, cz);
             Block block = getWorld().getBlockState(pp).getBlock();
-            if (getWorld().isAirBlock(pp) || block instanceof AbstractShieldBlock) {
-                getWorld().setBlockState(new BlockPos(pp), templateState, 2);
-            } else if (templateState.getMaterial() != Material.AIR){
-                if (!isShapedShield()) {
+            // A template block can still be there if the shield was never fully formed
+            if (getWorld().isAirBlock(pp) || block instanceof AbstractShieldBlock || block == ShieldSetup.shieldTemplateBlock) {
+                getWorld().setBlockState(new BlockPos(pp), decomposeTemplate, 2);
+            } else if (decomposeTemplate.getMaterial() != Material.AIR){
+                if (!decomposeShaped) {
                     // No room, just spawn the block
-                    BlockTools.spawnItemStack(getWorld(), cx, cy, cz, templateState.getBlock().getItem(getWorld(), new BlockPos(cx, cy, cz), templateState));
+                    BlockTools.spawnItemStack(getWorld(), cx, cy, cz, decomposeTemplate.getBlock().getItem(getWorld(), new BlockPos(cx, cy, cz), decomposeTemplate));
                 }
             }
         }
-        shieldComposed = false;
-        shieldActive = false;
-        shieldBlocks.clear();
-        blockStateTable.clear();
-        markDirtyClient();
+        if (decomposing.isEmpty()) {
+            pendingDecompose = null;
+            pendingDecomposeIndex = 0;
+        }
+        markDirty();
+        return budget;
     }
 
     /**
@@ -832,65 +1020,58 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
      * @param templateState the state for the shield template block we support
      * @param ctrl if true also scan for blocks in corners
      */
-    private void findTemplateBlocks(Map<BlockPos, IBlockState> coordinateSet, IBlockState templateState, boolean ctrl, BlockPos start) {
+    /**
+     * Find all template blocks connected to 'start'. The coordinates in 'blocks' are relative to
+     * this projector.
+     */
+    private void findTemplateBlocks(PositionMap blocks, IBlockState templateState, boolean ctrl, BlockPos start) {
         Deque<BlockPos> todo = new ArrayDeque<>();
+        PositionMap visited = new PositionMap();    // Everything that was tested already (also the blocks in 'todo')
 
-        if (ctrl) {
-            addToTodoCornered(coordinateSet, todo, start, templateState);
-            while (!todo.isEmpty() && coordinateSet.size() < supportedBlocks) {
-                BlockPos coordinate = todo.pollFirst();
-                coordinateSet.put(coordinate, null);
-                addToTodoCornered(coordinateSet, todo, coordinate, templateState);
-            }
-        } else {
-            addToTodoStraight(coordinateSet, todo, start, templateState);
-            while (!todo.isEmpty() && coordinateSet.size() < supportedBlocks) {
-                BlockPos coordinate = todo.pollFirst();
-                coordinateSet.put(coordinate, null);
-                addToTodoStraight(coordinateSet, todo, coordinate, templateState);
-            }
+        addToTodo(blocks, visited, todo, start, templateState, ctrl);
+        while (!todo.isEmpty() && blocks.size() < supportedBlocks) {
+            BlockPos coordinate = todo.pollFirst();
+            blocks.add(coordinate.getX() - getPos().getX(), coordinate.getY() - getPos().getY(), coordinate.getZ() - getPos().getZ());
+            addToTodo(blocks, visited, todo, coordinate, templateState, ctrl);
         }
     }
 
-    private void addToTodoStraight(Map<BlockPos, IBlockState> coordinateSet, Deque<BlockPos> todo, BlockPos coordinate, IBlockState templateState) {
-        for (EnumFacing dir : EnumFacing.VALUES) {
-            BlockPos pp = coordinate.offset(dir);
-            if (pp.getY() >= 0 && pp.getY() < getWorld().getHeight()) {
-                if (!coordinateSet.containsKey(pp)) {
-                    IBlockState state = getWorld().getBlockState(pp);
-                    if (state == templateState) {
-                        if (!todo.contains(pp)) {
-                            todo.addLast(pp);
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private void addToTodoCornered(Map<BlockPos, IBlockState> coordinateSet, Deque<BlockPos> todo, BlockPos coordinate, IBlockState templateState) {
+    // Add the neighbours of 'coordinate' that are template blocks. With 'ctrl' diagonal neighbours are also used
+    private void addToTodo(PositionMap blocks, PositionMap visited, Deque<BlockPos> todo, BlockPos coordinate, IBlockState templateState, boolean ctrl) {
         int x = coordinate.getX();
         int y = coordinate.getY();
         int z = coordinate.getZ();
-        BlockPos.MutableBlockPos c = new BlockPos.MutableBlockPos();
-        for (int xx = x-1 ; xx <= x+1 ; xx++) {
-            for (int yy = y-1 ; yy <= y+1 ; yy++) {
-                for (int zz = z-1 ; zz <= z+1 ; zz++) {
-                    if (xx != x || yy != y || zz != z) {
-                        if (yy >= 0 && yy < getWorld().getHeight()) {
-                            c.setPos(xx, yy, zz);
-                            if (!coordinateSet.containsKey(c)) {
-                                IBlockState state = getWorld().getBlockState(c);
-                                if (state == templateState) {
-                                    if (!todo.contains(c)) {
-                                        todo.addLast(c.toImmutable());
-                                    }
-                                }
-                            }
+        if (ctrl) {
+            for (int xx = x-1 ; xx <= x+1 ; xx++) {
+                for (int yy = y-1 ; yy <= y+1 ; yy++) {
+                    for (int zz = z-1 ; zz <= z+1 ; zz++) {
+                        if (xx != x || yy != y || zz != z) {
+                            testTemplateBlock(blocks, visited, todo, xx, yy, zz, templateState);
                         }
                     }
                 }
             }
+        } else {
+            for (EnumFacing dir : EnumFacing.VALUES) {
+                BlockPos pp = coordinate.offset(dir);
+                testTemplateBlock(blocks, visited, todo, pp.getX(), pp.getY(), pp.getZ(), templateState);
+            }
+        }
+    }
+
+    private void testTemplateBlock(PositionMap blocks, PositionMap visited, Deque<BlockPos> todo, int x, int y, int z, IBlockState templateState) {
+        if (y < 0 || y >= getWorld().getHeight()) {
+            return;
+        }
+        int dx = x - getPos().getX();
+        int dy = y - getPos().getY();
+        int dz = z - getPos().getZ();
+        if (blocks.contains(dx, dy, dz) || !visited.add(dx, dy, dz)) {
+            return;
+        }
+        BlockPos pp = new BlockPos(x, y, z);
+        if (getWorld().getBlockState(pp) == templateState) {
+            todo.addLast(pp);
         }
     }
 
@@ -900,14 +1081,6 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
         return (short) (s1 * 256 + s2);
     }
 
-    private static byte shortToByte1(short s) {
-        return (byte) ((s & 0xff00) >> 8);
-    }
-
-    private static byte shortToByte2(short s) {
-        return (byte) (s & 0xff);
-    }
-
 //    @Override
 //    public Object[] getDataForGUI() {
 //        return new Object[] {
@@ -998,8 +1171,14 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
         }
 
         shieldBlocks.clear();
-        blockStateTable.clear();
-        if (tagCompound.hasKey("relcoordsNew")) {
+        clearBlockStates();
+        blockIndex = null;
+        if (tagCompound.hasKey("shieldCoords")) {
+            int[] states = tagCompound.hasKey("shieldStates") ? tagCompound.getIntArray("shieldStates") : null;
+            shieldBlocks.fromBytes(tagCompound.getByteArray("shieldCoords"), states);
+            readBlockStates(tagCompound);
+        } else if (tagCompound.hasKey("relcoordsNew")) {
+            // Old format: 8 bytes per block
             byte[] byteArray = tagCompound.getByteArray("relcoordsNew");
             int j = 0;
             for (int i = 0; i < byteArray.length / 8; i++) {
@@ -1008,22 +1187,9 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
                 short dz = bytesToShort(byteArray[j + 4], byteArray[j + 5]);
                 short st = bytesToShort(byteArray[j + 6], byteArray[j + 7]);
                 j += 8;
-                shieldBlocks.add(new RelCoordinateShield(dx, dy, dz, st));
-            }
-
-            NBTTagList list = tagCompound.getTagList("gstates", Constants.NBT.TAG_COMPOUND);
-            for (int i = 0 ; i < list.tagCount() ; i++) {
-                NBTTagCompound tc = (NBTTagCompound) list.get(i);
-                String b = tc.getString("b");
-                int m = tc.getInteger("m");
-                Block block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(b));
-                if (block == null) {
-                    block = Blocks.STONE;
-                    m = 0;
-                }
-                IBlockState state = block.getStateFromMeta(m);
-                blockStateTable.add(state);
+                shieldBlocks.add(dx, dy, dz, st);
             }
+            readBlockStates(tagCompound);
         } else {
             byte[] byteArray = tagCompound.getByteArray("relcoords");
             int j = 0;
@@ -1032,9 +1198,44 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
                 short dy = bytesToShort(byteArray[j + 2], byteArray[j + 3]);
                 short dz = bytesToShort(byteArray[j + 4], byteArray[j + 5]);
                 j += 6;
-                shieldBlocks.add(new RelCoordinateShield(dx, dy, dz, -1));
+                shieldBlocks.add(dx, dy, dz, -1);
             }
         }
+
+        // Restart the work that was still pending when the shield was saved
+        pendingUpdate = tagCompound.getBoolean("shieldPending") ? shieldBlocks.getKeysBySection(getPos()) : null;
+        pendingUpdateIndex = 0;
+        decomposing.clear();
+        pendingDecompose = null;
+        pendingDecomposeIndex = 0;
+        if (tagCompound.hasKey("decomposeCoords")) {
+            decomposing.fromBytes(tagCompound.getByteArray("decomposeCoords"), null);
+            if (tagCompound.hasKey("decomposeColor")) {
+                int templateColor = tagCompound.getInteger("decomposeColor");
+                decomposeTemplate = ShieldSetup.shieldTemplateBlock.getDefaultState().withProperty(ShieldTemplateBlock.COLOR, ShieldTemplateBlock.TemplateColor.values()[templateColor]);
+            } else {
+                decomposeTemplate = Blocks.AIR.getDefaultState();
+            }
+            decomposeShaped = tagCompound.getBoolean("decomposeShaped");
+        }
+    }
+
+    private void readBlockStates(NBTTagCompound tagCompound) {
+        NBTTagList list = tagCompound.getTagList("gstates", Constants.NBT.TAG_COMPOUND);
+        for (int i = 0 ; i < list.tagCount() ; i++) {
+            NBTTagCompound tc = (NBTTagCompound) list.get(i);
+            String b = tc.getString("b");
+            int m = tc.getInteger("m");
+            Block block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(b));
+            if (block == null) {
+                block = Blocks.STONE;
+                m = 0;
+            }
+            IBlockState state = block.getStateFromMeta(m);
+            // Don't merge equal states here: the indices must stay the same as the saved ones
+            blockStateTable.add(state);
+            blockStateIndex.putIfAbsent(state, i);
+        }
     }
 
     @Override
@@ -1057,6 +1258,7 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
 
     private void readFiltersFromNBT(NBTTagCompound tagCompound) {
         filters.clear();
+        filtersChanged();
         NBTTagList filterList = tagCompound.getTagList("filters", Constants.NBT.TAG_COMPOUND);
         if (filterList != null) {
             for (int i = 0 ; i < filterList.tagCount() ; i++) {
@@ -1075,20 +1277,11 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
         if (templateState.getMaterial() != Material.AIR) {
             tagCompound.setInteger("templateColor", templateState.getValue(ShieldTemplateBlock.COLOR).ordinal());
         }
-        byte[] blocks = new byte[shieldBlocks.size() * 8];
-        int j = 0;
-        for (RelCoordinateShield c : shieldBlocks) {
-            blocks[j+0] = shortToByte1((short) c.getDx());
-            blocks[j+1] = shortToByte2((short) c.getDx());
-            blocks[j+2] = shortToByte1((short) c.getDy());
-            blocks[j+3] = shortToByte2((short) c.getDy());
-            blocks[j+4] = shortToByte1((short) c.getDz());
-            blocks[j+5] = shortToByte2((short) c.getDz());
-            blocks[j+6] = shortToByte1((short) c.getState());
-            blocks[j+7] = shortToByte2((short) c.getState());
-            j += 8;
-        }
-        tagCompound.setByteArray("relcoordsNew", blocks);
+        tagCompound.setByteArray("shieldCoords", shieldBlocks.toBytes());
+        int[] states = shieldBlocks.getSortedValues();
+        if (states != null) {
+            tagCompound.setIntArray("shieldStates", states);
+        }
 
         NBTTagList list = new NBTTagList();
         for (IBlockState state : blockStateTable) {
@@ -1099,6 +1292,17 @@ public class ShieldTEBase extends GenericEnergyReceiverTileEntity implements Def
         }
         tagCompound.setTag("gstates", list);
 
+        if (pendingUpdate != null) {
+            tagCompound.setBoolean("shieldPending", true);
+        }
+        if (!decomposing.isEmpty()) {
+            tagCompound.setByteArray("decomposeCoords", decomposing.toBytes());
+            if (decomposeTemplate.getMaterial() != Material.AIR) {
+                tagCompound.setInteger("decomposeColor", decomposeTemplate.getValue(ShieldTemplateBlock.COLOR).ordinal());
+            }
+            tagCompound.setBoolean("decomposeShaped", decomposeShaped);
+        }
+
         return tagCompound;
     }
 
@@ -0,0 +1,283 @@
+package mcjty.rftools.blocks.storagemonitor;
+
+import mcjty.lib.varia.WorldTools;
+import mcjty.rftools.api.general.IInventoryTracker;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.items.IItemHandler;
+import net.minecraftforge.items.ItemHandlerHelper;
+
+import java.util.*;
+
+/**
+ * Scanner wide index of the items in all inventories known to a storage scanner: for every
+ * distinct stack (item, meta and nbt) the count in every inventory that has it. Counting,
+ * searching and requesting read this index instead of walking the slots of all inventories.
+ *
+ * The index is brought up to date at most once per tick (update()). An inventory is only
+ * walked again if it may have changed: for an IInventoryTracker that is when the version
+ * changes, for other inventories it is when the last scan is older than
+ * StorageScannerConfiguration.indexRefreshTicks. Items that the storage scanner inserts or
+ * extracts itself are added to or removed from the index directly (see changed()).
+ */
+class InventoryItemIndex {
+
+    // For every item (item and meta) the distinct stacks that are known
+    private final Map<ItemKey, List<IndexedStack>> items = new HashMap<>();
+    // For every inventory what was found in it
+    private final Map<BlockPos, Entry> entries = new HashMap<>();
+    private long lastUpdate = -1;
+
+    /**
+     * Make sure the index is up to date for these inventories. This only does
+     * something the first time it is called in a tick.
+     */
+    public void update(World world, List<BlockPos> inventories) {
+        long time = world.getTotalWorldTime();
+        if (time == lastUpdate) {
+            return;
+        }
+        lastUpdate = time;
+        for (BlockPos pos : inventories) {
+            refresh(world, pos, time);
+        }
+    }
+
+    /**
+     * Make sure the index is up to date for this inventory. Call this right before
+     * the storage scanner changes it so that changed() starts from the right contents.
+     */
+    public void refresh(World world, BlockPos pos) {
+        refresh(world, pos, world.getTotalWorldTime());
+    }
+
+    private void refresh(World world, BlockPos pos, long time) {
+        if (!WorldTools.chunkLoaded(world, pos)) {
+            remove(pos);
+            return;
+        }
+        TileEntity te = world.getTileEntity(pos);
+        if (te == null || te instanceof StorageScannerTileEntity) {
+            remove(pos);
+            return;
+        }
+
+        Entry entry = entries.get(pos);
+        if (entry != null && !entry.stale) {
+            if (te instanceof IInventoryTracker) {
+                if (entry.tracked && entry.version == ((IInventoryTracker) te).getVersion()) {
+                    return;
+                }
+            } else if (!entry.tracked && time < entry.nextScan) {
+                return;
+            }
+        }
+
+        IItemHandler handler = StorageScannerTileEntity.getItemHandlerAt(te, null);
+        if (handler == null) {
+            remove(pos);
+            return;
+        }
+        scan(pos, te, handler, entry == null ? null : entry.contents, time);
+    }
+
+    private void scan(BlockPos pos, TileEntity te, IItemHandler handler, Map<IndexedStack, Integer> oldContents, long time) {
+        Entry entry = new Entry();
+        if (te instanceof IInventoryTracker) {
+            entry.tracked = true;
+            entry.version = ((IInventoryTracker) te).getVersion();
+        } else if (oldContents == null) {
+            // Spread the rescans of new inventories over the refresh interval
+            entry.nextScan = time + 1 + Math.floorMod(pos.hashCode(), Math.max(1, StorageScannerConfiguration.indexRefreshTicks));
+        } else {
+            entry.nextScan = time + StorageScannerConfiguration.indexRefreshTicks;
+        }
+
+        for (int i = 0; i < handler.getSlots(); i++) {
+            ItemStack stack = handler.getStackInSlot(i);
+            if (!stack.isEmpty()) {
+                entry.contents.merge(findOrCreate(stack), stack.getCount(), Integer::sum);
+            }
+        }
+
+        if (oldContents != null) {
+            for (Map.Entry<IndexedStack, Integer> e : oldContents.entrySet()) {
+                if (!entry.contents.containsKey(e.getKey())) {
+                    setCount(e.getKey(), pos, 0);
+                }
+            }
+        }
+        for (Map.Entry<IndexedStack, Integer> e : entry.contents.entrySet()) {
+            setCount(e.getKey(), pos, e.getValue());
+        }
+        entries.put(pos, entry);
+    }
+
+    /**
+     * The storage scanner inserted (positive amount) or extracted (negative amount) this
+     * stack in the inventory at this position. Update the index without walking the slots.
+     */
+    public void changed(World world, BlockPos pos, ItemStack stack, int amount) {
+        Entry entry = entries.get(pos);
+        if (entry == null || stack.isEmpty() || amount == 0) {
+            return;
+        }
+        IndexedStack indexed = findOrCreate(stack);
+        int count = Math.max(0, entry.contents.getOrDefault(indexed, 0) + amount);
+        if (count == 0) {
+            entry.contents.remove(indexed);
+        } else {
+            entry.contents.put(indexed, count);
+        }
+        setCount(indexed, pos, count);
+
+        if (entry.tracked) {
+            // Our own change is now in the index so we don't have to rescan for this version
+            TileEntity te = world.getTileEntity(pos);
+            if (te instanceof IInventoryTracker) {
+                entry.version = ((IInventoryTracker) te).getVersion();
+            }
+        }
+    }
+
+    /**
+     * Rescan the inventory at this position the next time it is needed. Use this for
+     * changes that the storage scanner doesn't know the details of.
+     */
+    public void invalidate(BlockPos pos) {
+        Entry entry = entries.get(pos);
+        if (entry != null) {
+            entry.stale = true;
+        }
+        lastUpdate = -1;
+    }
+
+    /**
+     * Forget everything about the inventory at this position.
+     */
+    public void remove(BlockPos pos) {
+        Entry entry = entries.remove(pos);
+        if (entry != null) {
+            for (IndexedStack indexed : entry.contents.keySet()) {
+                setCount(indexed, pos, 0);
+            }
+        }
+    }
+
+    public void clear() {
+        items.clear();
+        entries.clear();
+        lastUpdate = -1;
+    }
+
+    /**
+     * All distinct stacks that are equal to this stack (same item and meta)
+     */
+    public List<IndexedStack> getStacks(ItemStack stack) {
+        List<IndexedStack> list = items.get(new ItemKey(stack.getItem(), stack.getMetadata()));
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    /**
+     * All distinct stacks in the index
+     */
+    public Iterable<IndexedStack> getAllStacks() {
+        return () -> items.values().stream().flatMap(List::stream).iterator();
+    }
+
+    private IndexedStack findOrCreate(ItemStack stack) {
+        List<IndexedStack> list = items.computeIfAbsent(new ItemKey(stack.getItem(), stack.getMetadata()), k -> new ArrayList<>());
+        for (IndexedStack indexed : list) {
+            if (ItemHandlerHelper.canItemStacksStack(indexed.stack, stack)) {
+                return indexed;
+            }
+        }
+        IndexedStack indexed = new IndexedStack(ItemHandlerHelper.copyStackWithSize(stack, 1));
+        list.add(indexed);
+        return indexed;
+    }
+
+    private void setCount(IndexedStack indexed, BlockPos pos, int count) {
+        if (count > 0) {
+            indexed.counts.put(pos, count);
+            return;
+        }
+        indexed.counts.remove(pos);
+        if (indexed.counts.isEmpty()) {
+            ItemKey key = new ItemKey(indexed.stack.getItem(), indexed.stack.getMetadata());
+            List<IndexedStack> list = items.get(key);
+            if (list != null) {
+                list.remove(indexed);
+                if (list.isEmpty()) {
+                    items.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * A distinct stack and the number of items of it in every inventory
+     */
+    public static class IndexedStack {
+        private final ItemStack stack;
+        private final Map<BlockPos, Integer> counts = new HashMap<>();
+
+        private IndexedStack(ItemStack stack) {
+            this.stack = stack;
+        }
+
+        // A stack with count 1. Don't modify
+        public ItemStack getStack() {
+            return stack;
+        }
+
+        public Map<BlockPos, Integer> getCounts() {
+            return Collections.unmodifiableMap(counts);
+        }
+    }
+
+    private static class Entry {
+        private boolean tracked = false;
+        private boolean stale = false;
+        private int version;
+        private long nextScan;
+        private final Map<IndexedStack, Integer> contents = new HashMap<>();
+    }
+
+    private static class ItemKey {
+        private final Item item;
+        private final int meta;
+
+        public ItemKey(Item item, int meta) {
+            this.item = item;
+            this.meta = meta;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            ItemKey that = (ItemKey) o;
+
+            if (meta != that.meta) {
+                return false;
+            }
+            return item.equals(that.item);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = item.hashCode();
+            result = 31 * result + meta;
+            return result;
+        }
+    }
+}
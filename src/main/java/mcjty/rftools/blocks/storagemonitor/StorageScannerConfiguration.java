@@ -9,6 +9,7 @@ public class StorageScannerConfiguration {
     public static int rfPerRequest = 100;
     public static int rfPerInsert = 20;
     public static int hilightTime = 5;
+    public static int indexRefreshTicks = 20;
 
     public static boolean hilightStarredOnGuiOpen = true;
     public static boolean requestStraightToInventory = true;
@@ -19,6 +20,8 @@ public class StorageScannerConfiguration {
         rfPerRequest = cfg.get(CATEGORY_STORAGE_MONITOR, "rfPerRequest", rfPerRequest, "Amount of RF used to request an item").getInt();
         rfPerInsert = cfg.get(CATEGORY_STORAGE_MONITOR, "rfPerInsert", rfPerInsert, "Amount of RF used to insert an item").getInt();
         hilightTime = cfg.get(CATEGORY_STORAGE_MONITOR, "hilightTime", hilightTime, "Time (in seconds) to hilight a block in the world").getInt();
+        indexRefreshTicks = cfg.get(CATEGORY_STORAGE_MONITOR, "indexRefreshTicks", indexRefreshTicks,
+                "Number of ticks that the storage scanner trusts its item index for an inventory that doesn't report changes itself (inventories implementing IInventoryTracker are only rescanned when they change)").getInt();
         MAXENERGY = cfg.get(CATEGORY_STORAGE_MONITOR, "scannerMaxRF", MAXENERGY,
                 "Maximum RF storage that the storage scanner can hold").getInt();
         RECEIVEPERTICK = cfg.get(CATEGORY_STORAGE_MONITOR, "scannerRFPerTick", RECEIVEPERTICK,
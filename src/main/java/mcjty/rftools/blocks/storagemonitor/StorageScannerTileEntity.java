@@ -13,7 +13,6 @@ import mcjty.lib.typed.Type;
 import mcjty.lib.typed.TypedMap;
 import mcjty.lib.varia.*;
 import mcjty.rftools.RFTools;
-import mcjty.rftools.api.general.IInventoryTracker;
 import mcjty.rftools.api.storage.IStorageScanner;
 import mcjty.rftools.craftinggrid.*;
 import mcjty.rftools.jei.JEIRecipeAcceptor;
@@ -102,7 +101,7 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
     private Map<BlockPos, InventoryAccessSettings> xnetAccess = Collections.emptyMap();
     private int xnetDelay = XNETDELAY;      // Timer to control when to clear the above
 
-    private Map<CachedItemKey, CachedItemCount> cachedCounts = new HashMap<>();
+    private final InventoryItemIndex itemIndex = new InventoryItemIndex();
     private Set<BlockPos> routable = new HashSet<>();
     private int radius = 1;
 
@@ -182,6 +181,9 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
             return StorageCraftingTools.testCraftItems(player, n, activeRecipe, itemSource);
         } else {
             StorageCraftingTools.craftItems(player, n, activeRecipe, itemSource);
+            inventories.stream()
+                    .filter(p -> isOutputFromGui(p) && isRoutable(p))
+                    .forEach(itemIndex::invalidate);
             return new int[0];
         }
     }
@@ -259,7 +261,7 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
             TileEntity te = getWorld().getTileEntity(lastSelectedInventory);
             if (te != null && !(te instanceof StorageScannerTileEntity)) {
                 if (testAccess.apply(lastSelectedInventory) && getInputMatcher(lastSelectedInventory).test(stack)) {
-                    stack = InventoryHelper.insertItem(getWorld(), lastSelectedInventory, null, stack);
+                    stack = insertAndIndex(lastSelectedInventory, stack);
                     if (stack.isEmpty()) {
                         return stack;
                     }
@@ -275,11 +277,19 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
                 .iterator();
         while (!stack.isEmpty() && iterator.hasNext()) {
             TileEntity te = iterator.next();
-            stack = InventoryHelper.insertItem(getWorld(), te.getPos(), null, stack);
+            stack = insertAndIndex(te.getPos(), stack);
         }
         return stack;
     }
 
+    private ItemStack insertAndIndex(BlockPos p, ItemStack stack) {
+        ItemStack inserted = stack.copy();
+        itemIndex.refresh(getWorld(), p);
+        ItemStack remaining = InventoryHelper.insertItem(getWorld(), p, null, stack);
+        itemIndex.changed(getWorld(), p, inserted, inserted.getCount() - remaining.getCount());
+        return remaining;
+    }
+
     /**
      * Give a stack matching the input stack to the player containing either a single
      * item or else a full stack
@@ -300,19 +310,24 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
         Set<Integer> oredictMatches = getOredictMatchers(stack, oredict);
         final int[] cnt = {single ? 1 : stack.getMaxStackSize()};
         int orig = cnt[0];
-        inventories.stream()
-                .filter(this::isOutputFromScreen)
-                .map(this::getItemHandlerAt)
-                .filter(Objects::nonNull)
-                .forEachOrdered(handler -> {
-                    for (int i = 0; i < handler.getSlots(); i++) {
-                        ItemStack itemStack = handler.getStackInSlot(i);
-                        if (isItemEqual(stack, itemStack, oredictMatches)) {
-                            ItemStack received = handler.extractItem(i, cnt[0], false);
-                            giveItemToPlayer(player, cnt, received);
-                        }
-                    }
-                });
+        for (BlockPos p : findInventoriesWith(findIndexedStacks(stack, oredictMatches))) {
+            if (!isOutputFromScreen(p)) {
+                continue;
+            }
+            IItemHandler handler = getItemHandlerAt(p);
+            if (handler == null) {
+                continue;
+            }
+            itemIndex.refresh(getWorld(), p);
+            for (int i = 0; i < handler.getSlots(); i++) {
+                ItemStack itemStack = handler.getStackInSlot(i);
+                if (isItemEqual(stack, itemStack, oredictMatches)) {
+                    ItemStack received = handler.extractItem(i, cnt[0], false);
+                    itemIndex.changed(getWorld(), p, received, -received.getCount());
+                    giveItemToPlayer(player, cnt, received);
+                }
+            }
+        }
         if (orig != cnt[0]) {
             consumeEnergy(StorageScannerConfiguration.rfPerRequest);
             SoundTools.playSound(getWorld(), SoundEvents.ENTITY_ITEM_PICKUP, getPos().getX(), getPos().getY(), getPos().getZ(), 1.0f, 1.0f);
@@ -340,20 +355,7 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
 
     @Override
     public int countItems(Predicate<ItemStack> matcher, boolean starred, @Nullable Integer maxneeded) {
-        final int[] cc = {0};
-        inventories.stream()
-                .filter(p -> isValid(p) && ((!starred) || isRoutable(p)) && WorldTools.chunkLoaded(getWorld(), p))
-                .map(getWorld()::getTileEntity)
-                .filter(te -> te != null && !(te instanceof StorageScannerTileEntity))
-                .allMatch(te -> {
-                    InventoryHelper.getItems(te, matcher)
-                            .forEach(s -> cc[0] += s.getCount());
-                    if (maxneeded != null && cc[0] >= maxneeded) {
-                        return false;
-                    }
-                    return true;
-                });
-        return cc[0];
+        return countItems(findIndexedStacks(matcher), starred, maxneeded);
     }
 
 
@@ -367,45 +369,66 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
         if (stack.isEmpty()) {
             return 0;
         }
-        Set<Integer> oredictMatches = getOredictMatchers(stack, oredict);
-        Iterator<TileEntity> iterator = inventories.stream()
-                .filter(p -> isValid(p) && ((!starred) || isRoutable(p)) && WorldTools.chunkLoaded(getWorld(), p))
-                .map(getWorld()::getTileEntity)
-                .filter(te -> te != null && !(te instanceof StorageScannerTileEntity))
-                .iterator();
+        return countItems(findIndexedStacks(stack, getOredictMatchers(stack, oredict)), starred, maxneeded);
+    }
 
+    private int countItems(List<InventoryItemIndex.IndexedStack> stacks, boolean starred, @Nullable Integer maxneeded) {
         int cnt = 0;
-        while (iterator.hasNext()) {
-            TileEntity te = iterator.next();
-            Integer cachedCount = null;
-            if (te instanceof IInventoryTracker) {
-                IInventoryTracker tracker = (IInventoryTracker) te;
-                CachedItemCount itemCount = cachedCounts.get(new CachedItemKey(te.getPos(), stack.getItem(), stack.getMetadata()));
-                if (itemCount != null) {
-                    Integer oldVersion = itemCount.getVersion();
-                    if (oldVersion == tracker.getVersion()) {
-                        cachedCount = itemCount.getCount();
+        for (InventoryItemIndex.IndexedStack indexed : stacks) {
+            for (Map.Entry<BlockPos, Integer> entry : indexed.getCounts().entrySet()) {
+                BlockPos p = entry.getKey();
+                if (isValid(p) && ((!starred) || isRoutable(p))) {
+                    cnt += entry.getValue();
+                    if (maxneeded != null && cnt >= maxneeded) {
+                        return cnt;
                     }
                 }
             }
-            if (cachedCount != null) {
-                cnt += cachedCount;
-            } else {
-                final int[] cc = {0};
-                InventoryHelper.getItems(te, s -> isItemEqual(stack, s, oredictMatches))
-                        .forEach(s -> cc[0] += s.getCount());
-                if (te instanceof IInventoryTracker) {
-                    IInventoryTracker tracker = (IInventoryTracker) te;
-                    cachedCounts.put(new CachedItemKey(te.getPos(), stack.getItem(), stack.getMetadata()), new CachedItemCount(tracker.getVersion(), cc[0]));
-                }
-                cnt += cc[0];
-            }
-            if (maxneeded != null && cnt >= maxneeded) {
-                break;
+        }
+        return cnt;
+    }
+
+    /**
+     * Find all distinct stacks in the item index that match this stack (same item
+     * and meta or, with ore dictionary matching, one of the same ore names)
+     */
+    private List<InventoryItemIndex.IndexedStack> findIndexedStacks(ItemStack stack, Set<Integer> oredictMatches) {
+        if (oredictMatches.isEmpty()) {
+            itemIndex.update(getWorld(), inventories);
+            return itemIndex.getStacks(stack);
+        }
+        return findIndexedStacks(s -> isItemEqual(stack, s, oredictMatches));
+    }
+
+    private List<InventoryItemIndex.IndexedStack> findIndexedStacks(Predicate<ItemStack> matcher) {
+        itemIndex.update(getWorld(), inventories);
+        List<InventoryItemIndex.IndexedStack> stacks = new ArrayList<>();
+        for (InventoryItemIndex.IndexedStack indexed : itemIndex.getAllStacks()) {
+            if (matcher.test(indexed.getStack())) {
+                stacks.add(indexed);
             }
         }
+        return stacks;
+    }
 
-        return cnt;
+    /**
+     * Return the inventories that contain one of these stacks in the order of the inventory list
+     */
+    private List<BlockPos> findInventoriesWith(List<InventoryItemIndex.IndexedStack> stacks) {
+        Set<BlockPos> found = new HashSet<>();
+        for (InventoryItemIndex.IndexedStack indexed : stacks) {
+            found.addAll(indexed.getCounts().keySet());
+        }
+        if (found.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<BlockPos> result = new ArrayList<>(found.size());
+        for (BlockPos p : inventories) {
+            if (found.contains(p)) {
+                result.add(p);
+            }
+        }
+        return result;
     }
 
     private static Set<Integer> getOredictMatchers(ItemStack stack, boolean oredict) {
@@ -445,12 +468,13 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
         Predicate<ItemStack> matcher = getMatcher(search);
 
         Set<BlockPos> output = new HashSet<>();
-        Predicate<ItemStack> finalMatcher = matcher;
-        inventories.stream()
-                .filter(this::isValid)
-                .map(getWorld()::getTileEntity)
-                .filter(te -> te != null && !(te instanceof StorageScannerTileEntity))
-                .forEach(te -> InventoryHelper.getItems(te, finalMatcher).forEach(s -> output.add(te.getPos())));
+        for (InventoryItemIndex.IndexedStack indexed : findIndexedStacks(matcher)) {
+            for (BlockPos p : indexed.getCounts().keySet()) {
+                if (isValid(p)) {
+                    output.add(p);
+                }
+            }
+        }
         return output;
     }
 
@@ -663,11 +687,12 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
             return;
         }
         inventories.remove(index);
+        itemIndex.remove(p);
         markDirty();
     }
 
     public void clearCachedCounts() {
-        cachedCounts.clear();
+        itemIndex.clear();
     }
 
     public Stream<BlockPos> findInventories() {
@@ -676,7 +701,7 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
         }
 
         // Clear the caches
-        cachedCounts.clear();
+        itemIndex.clear();
         inventoriesFromXNet.clear();
 
         // First remove all inventories that are either out of range or no longer an inventory:
@@ -736,25 +761,31 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
         if (getStoredPower() < StorageScannerConfiguration.rfPerRequest) {
             return ItemStack.EMPTY;
         }
-        return inventories.stream()
-                .filter(p -> isOutputFromAuto(p) && ((!doRoutable) || isRoutable(p)))
-                .map(this::getItemHandlerAt)
-                .filter(Objects::nonNull)
-                .map(handler -> {
-                    for (int i = 0; i < handler.getSlots(); i++) {
-                        ItemStack itemStack = handler.getStackInSlot(i);
-                        if (matcher.test(itemStack)) {
-                            ItemStack received = handler.extractItem(i, amount, simulate);
-                            if (!received.isEmpty()) {
-                                return received.copy();
-                            }
+        for (BlockPos p : findInventoriesWith(findIndexedStacks(matcher))) {
+            if (!isOutputFromAuto(p) || (doRoutable && !isRoutable(p))) {
+                continue;
+            }
+            IItemHandler handler = getItemHandlerAt(p);
+            if (handler == null) {
+                continue;
+            }
+            if (!simulate) {
+                itemIndex.refresh(getWorld(), p);
+            }
+            for (int i = 0; i < handler.getSlots(); i++) {
+                ItemStack itemStack = handler.getStackInSlot(i);
+                if (matcher.test(itemStack)) {
+                    ItemStack received = handler.extractItem(i, amount, simulate);
+                    if (!received.isEmpty()) {
+                        if (!simulate) {
+                            itemIndex.changed(getWorld(), p, received, -received.getCount());
                         }
+                        return received.copy();
                     }
-                    return null;        // Null itemstack is ok here! needed for findFirst.
-                })
-                .filter(Objects::nonNull)
-                .findFirst()
-                .orElse(ItemStack.EMPTY);
+                }
+            }
+        }
+        return ItemStack.EMPTY;
     }
 
     @Override
@@ -769,27 +800,34 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
         Set<Integer> oredictMatches = getOredictMatchers(match, oredict);
         final ItemStack[] result = {ItemStack.EMPTY};
         final int[] cnt = {match.getMaxStackSize() < amount ? match.getMaxStackSize() : amount};
-        inventories.stream()
-                .filter(p -> isOutputFromAuto(p) && (!doRoutable) || isRoutable(p))
-                .map(this::getItemHandlerAt)
-                .filter(Objects::nonNull)
-                .allMatch(handler -> {
-                    for (int i = 0; i < handler.getSlots(); i++) {
-                        ItemStack itemStack = handler.getStackInSlot(i);
-                        if (isItemEqual(match, itemStack, oredictMatches)) {
-                            ItemStack received = handler.extractItem(i, cnt[0], false);
-                            if (!received.isEmpty()) {
-                                if (result[0].isEmpty()) {
-                                    result[0] = received;
-                                } else {
-                                    result[0].grow(received.getCount());
-                                }
-                                cnt[0] -= received.getCount();
-                            }
+        for (BlockPos p : findInventoriesWith(findIndexedStacks(match, oredictMatches))) {
+            if (!(isOutputFromAuto(p) && (!doRoutable) || isRoutable(p))) {
+                continue;
+            }
+            IItemHandler handler = getItemHandlerAt(p);
+            if (handler == null) {
+                continue;
+            }
+            itemIndex.refresh(getWorld(), p);
+            for (int i = 0; i < handler.getSlots(); i++) {
+                ItemStack itemStack = handler.getStackInSlot(i);
+                if (isItemEqual(match, itemStack, oredictMatches)) {
+                    ItemStack received = handler.extractItem(i, cnt[0], false);
+                    if (!received.isEmpty()) {
+                        itemIndex.changed(getWorld(), p, received, -received.getCount());
+                        if (result[0].isEmpty()) {
+                            result[0] = received;
+                        } else {
+                            result[0].grow(received.getCount());
                         }
+                        cnt[0] -= received.getCount();
                     }
-                    return cnt[0] > 0;
-                });
+                }
+            }
+            if (cnt[0] <= 0) {
+                break;
+            }
+        }
         if (!result[0].isEmpty()) {
             consumeEnergy(StorageScannerConfiguration.rfPerRequest);
         }
@@ -810,7 +848,7 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
 
     // @todo move to McJtyLib
     @Nullable
-    private static IItemHandler getItemHandlerAt(@Nullable TileEntity te, EnumFacing intSide) {
+    static IItemHandler getItemHandlerAt(@Nullable TileEntity te, EnumFacing intSide) {
         if (te != null && te.hasCapability(CapabilityItemHandler.ITEM_HANDLER_CAPABILITY, intSide)) {
             IItemHandler handler = te.getCapability(CapabilityItemHandler.ITEM_HANDLER_CAPABILITY, intSide);
             if (handler != null) {
@@ -842,15 +880,23 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
 
         ItemStack toInsert = stack.copy();
 
-        Iterator<IItemHandler> iterator = inventories.stream()
+        Iterator<BlockPos> iterator = inventories.stream()
                 .filter(p -> isInputFromAuto(p) && (!p.equals(getPos()) && isRoutable(p) && getInputMatcher(p).test(stack)))
-                .map(this::getItemHandlerAt)
-                .filter(Objects::nonNull)
                 .iterator();
 
         while (!toInsert.isEmpty() && iterator.hasNext()) {
-            IItemHandler handler = iterator.next();
-            toInsert = ItemHandlerHelper.insertItem(handler, toInsert, simulate);
+            BlockPos p = iterator.next();
+            IItemHandler handler = getItemHandlerAt(p);
+            if (handler != null) {
+                if (simulate) {
+                    toInsert = ItemHandlerHelper.insertItem(handler, toInsert, true);
+                } else {
+                    itemIndex.refresh(getWorld(), p);
+                    ItemStack remaining = ItemHandlerHelper.insertItem(handler, toInsert, false);
+                    itemIndex.changed(getWorld(), p, toInsert, toInsert.getCount() - remaining.getCount());
+                    toInsert = remaining;
+                }
+            }
         }
 
         consumeEnergy(StorageScannerConfiguration.rfPerInsert);
@@ -864,11 +910,13 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
         }
 
         int size = InventoryHelper.getInventorySize(tileEntity);
+        itemIndex.refresh(getWorld(), invPos);
 
         for (int i = 0; i < size; i++) {
             ItemStack stack = ItemStackTools.getStack(tileEntity, i);
             if (ItemHandlerHelper.canItemStacksStack(requested, stack)) {
                 ItemStack extracted = ItemStackTools.extractItem(tileEntity, i, todo[0]);
+                itemIndex.changed(getWorld(), invPos, extracted, -extracted.getCount());
                 todo[0] -= extracted.getCount();
                 if (outSlot.isEmpty()) {
                     outSlot = extracted;
@@ -911,7 +959,13 @@ public class StorageScannerTileEntity extends GenericEnergyReceiverTileEntity im
         }
 
         if (invPos.getY() == -1) {
-            Iterator<BlockPos> iterator = inventories.stream()
+            List<InventoryItemIndex.IndexedStack> stacks = new ArrayList<>();
+            for (InventoryItemIndex.IndexedStack indexed : findIndexedStacks(requested, Collections.emptySet())) {
+                if (ItemHandlerHelper.canItemStacksStack(requested, indexed.getStack())) {
+                    stacks.add(indexed);
+                }
+            }
+            Iterator<BlockPos> iterator = findInventoriesWith(stacks).stream()
                     .filter(p -> isOutputFromGui(p) && isRoutable(p))
                     .iterator();
             while (iterator.hasNext()) {
@@ -174,6 +174,7 @@ public class DialingDeviceTileEntity extends GenericEnergyReceiverTileEntity {
             if (playerName.equals(entityplayermp.getName())) {
                 FavoriteDestinationsProperties favoriteDestinations = PlayerExtendedProperties.getFavoriteDestinations(entityplayermp);
                 favoriteDestinations.setDestinationFavorite(new GlobalCoordinate(receiver, dimension), favorite);
+                TeleportDestinations.getDestinations(getWorld()).invalidateCache(playerName);
                 return;
             }
         }
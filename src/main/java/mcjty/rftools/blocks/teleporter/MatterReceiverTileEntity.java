@@ -81,7 +81,7 @@ public class MatterReceiverTileEntity extends GenericEnergyReceiverTileEntity im
         TeleportDestinations destinations = TeleportDestinations.getDestinations(getWorld());
         TeleportDestination destination = destinations.getDestination(getPos(), getWorld().provider.getDimension());
         if (destination != null) {
-            destination.setName(name);
+            destinations.setDestinationName(destination, name);
             destinations.save();
         }
 
@@ -127,7 +127,7 @@ public class MatterReceiverTileEntity extends GenericEnergyReceiverTileEntity im
         GlobalCoordinate gc = new GlobalCoordinate(getPos(), getWorld().provider.getDimension());
         TeleportDestination destination = destinations.getDestination(gc.getCoordinate(), gc.getDimension());
         if (destination != null) {
-            destination.setName(name);
+            destinations.setDestinationName(destination, name);
 
             if (id == -1) {
                 id = destinations.getNewId(gc);
@@ -147,9 +147,17 @@ public class MatterReceiverTileEntity extends GenericEnergyReceiverTileEntity im
 
     public void setPrivateAccess(boolean privateAccess) {
         this.privateAccess = privateAccess;
+        invalidateDestinations();
         markDirtyClient();
     }
 
+    // The access list changed so the lists of valid destinations are no longer correct
+    private void invalidateDestinations() {
+        if (getWorld() != null && !getWorld().isRemote) {
+            TeleportDestinations.getDestinations(getWorld()).invalidateCache();
+        }
+    }
+
     public boolean checkAccess(String player) {
         if (!privateAccess) {
             return true;
@@ -164,6 +172,7 @@ public class MatterReceiverTileEntity extends GenericEnergyReceiverTileEntity im
     public void addPlayer(String player) {
         if (!allowedPlayers.contains(player)) {
             allowedPlayers.add(player);
+            invalidateDestinations();
             markDirtyClient();
         }
     }
@@ -171,6 +180,7 @@ public class MatterReceiverTileEntity extends GenericEnergyReceiverTileEntity im
     public void delPlayer(String player) {
         if (allowedPlayers.contains(player)) {
             allowedPlayers.remove(player);
+            invalidateDestinations();
             markDirtyClient();
         }
     }
@@ -27,6 +27,12 @@ public class TeleportDestinations extends AbstractWorldData<TeleportDestinations
     private final Map<GlobalCoordinate,Integer> destinationIdByCoordinate = new HashMap<>();
     private int lastId = 0;
 
+    // Sorted result of getValidDestinations() per player (null key for no player). Not saved.
+    // Cleared when a receiver is added, removed, renamed or changes its access list. Favorites
+    // only clear the entry of that player.
+    private final Map<String,List<TeleportDestinationClientInfo>> validDestinationsCache = new HashMap<>();
+    private int cachedLoadedWorlds = -1;
+
     public TeleportDestinations(String name) {
         super(name);
     }
@@ -37,6 +43,15 @@ public class TeleportDestinations extends AbstractWorldData<TeleportDestinations
         destinationIdByCoordinate.clear();
         destinations.clear();
         lastId = 0;
+        invalidateCache();
+    }
+
+    public void invalidateCache() {
+        validDestinationsCache.clear();
+    }
+
+    public void invalidateCache(String playerName) {
+        validDestinationsCache.remove(playerName);
     }
 
     public static String getDestinationName(TeleportDestinations destinations, int receiverId) {
@@ -81,6 +96,7 @@ public class TeleportDestinations extends AbstractWorldData<TeleportDestinations
             }
             if (removed) {
                 destinations.remove(key);
+                invalidateCache();
             }
         }
     }
@@ -91,7 +107,22 @@ public class TeleportDestinations extends AbstractWorldData<TeleportDestinations
 
 
     // Server side only
-    public Collection<TeleportDestinationClientInfo> getValidDestinations(World worldObj, String playerName) {
+    public List<TeleportDestinationClientInfo> getValidDestinations(World worldObj, String playerName) {
+        // Dimension names and access checks depend on which worlds are loaded
+        int loadedWorlds = DimensionManager.getWorlds().length;
+        if (loadedWorlds != cachedLoadedWorlds) {
+            invalidateCache();
+            cachedLoadedWorlds = loadedWorlds;
+        }
+        List<TeleportDestinationClientInfo> cached = validDestinationsCache.get(playerName);
+        if (cached == null) {
+            cached = Collections.unmodifiableList(findValidDestinations(worldObj, playerName));
+            validDestinationsCache.put(playerName, cached);
+        }
+        return cached;
+    }
+
+    private List<TeleportDestinationClientInfo> findValidDestinations(World worldObj, String playerName) {
         FavoriteDestinationsProperties properties = null;
         if (playerName != null) {
             List<EntityPlayerMP> list = ((WorldServer) worldObj).getMinecraftServer().getPlayerList().getPlayers();
@@ -185,6 +216,7 @@ public class TeleportDestinations extends AbstractWorldData<TeleportDestinations
         if (!destinations.containsKey(key)) {
             TeleportDestination teleportDestination = new TeleportDestination(key.getCoordinate(), key.getDimension());
             destinations.put(key, teleportDestination);
+            invalidateCache();
         }
         return destinations.get(key);
     }
@@ -206,7 +238,9 @@ public class TeleportDestinations extends AbstractWorldData<TeleportDestinations
             return;
         }
         GlobalCoordinate key = new GlobalCoordinate(coordinate, dimension);
-        destinations.remove(key);
+        if (destinations.remove(key) != null) {
+            invalidateCache();
+        }
         Integer id = destinationIdByCoordinate.get(key);
         if (id != null) {
             destinationById.remove(id);
@@ -214,6 +248,13 @@ public class TeleportDestinations extends AbstractWorldData<TeleportDestinations
         }
     }
 
+    // Change the name of a destination. Use this instead of TeleportDestination.setName() so
+    // that the cached destination lists are updated
+    public void setDestinationName(TeleportDestination destination, String name) {
+        destination.setName(name);
+        invalidateCache();
+    }
+
     public TeleportDestination getDestination(GlobalCoordinate coordinate) {
         return destinations.get(coordinate);
     }
@@ -227,6 +268,7 @@ public class TeleportDestinations extends AbstractWorldData<TeleportDestinations
         destinations.clear();
         destinationById.clear();
         destinationIdByCoordinate.clear();
+        invalidateCache();
         lastId = tagCompound.getInteger("lastId");
         readDestinationsFromNBT(tagCompound);
     }
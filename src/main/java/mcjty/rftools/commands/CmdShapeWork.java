@@ -0,0 +1,26 @@
+package mcjty.rftools.commands;
+
+import mcjty.rftools.shapes.ShapeDataManagerServer;
+import net.minecraft.command.ICommandSender;
+
+public class CmdShapeWork extends AbstractRfToolsCommand {
+    @Override
+    public String getHelp() {
+        return "";
+    }
+
+    @Override
+    public String getCommand() {
+        return "work";
+    }
+
+    @Override
+    public int getPermissionLevel() {
+        return 1;
+    }
+
+    @Override
+    public void execute(ICommandSender sender, String[] args) {
+        ShapeDataManagerServer.listWork(sender);
+    }
+}
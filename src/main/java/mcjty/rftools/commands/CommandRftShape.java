@@ -6,6 +6,7 @@ public class CommandRftShape extends DefaultCommand {
         registerCommand(new CmdSaveCard());
         registerCommand(new CmdLoadCard());
         registerCommand(new CmdListScans());
+        registerCommand(new CmdShapeWork());
     }
 
     @Override
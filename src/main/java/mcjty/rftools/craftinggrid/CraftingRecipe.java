@@ -4,7 +4,6 @@ import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.inventory.Container;
 import net.minecraft.inventory.InventoryCrafting;
 import net.minecraft.item.ItemStack;
-import net.minecraft.item.crafting.CraftingManager;
 import net.minecraft.item.crafting.IRecipe;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
@@ -44,12 +43,14 @@ public class CraftingRecipe {
     private CraftMode craftMode = CraftMode.EXT;
 
     public static IRecipe findRecipe(World world, InventoryCrafting inv) {
-        for (IRecipe r : CraftingManager.REGISTRY) {
-            if (r != null && r.matches(inv, world)) {
-                return r;
-            }
-        }
-        return null;
+        return RecipeIndex.findRecipe(world, inv);
+    }
+
+    /**
+     * Call this when recipes were added or removed
+     */
+    public static void invalidateRecipeIndex() {
+        RecipeIndex.invalidate();
     }
 
     public void readFromNBT(NBTTagCompound tagCompound) {
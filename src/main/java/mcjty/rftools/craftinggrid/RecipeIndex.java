@@ -0,0 +1,210 @@
+package mcjty.rftools.craftinggrid;
+
+import net.minecraft.inventory.InventoryCrafting;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.crafting.CraftingManager;
+import net.minecraft.item.crafting.IRecipe;
+import net.minecraft.item.crafting.Ingredient;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.World;
+
+import java.util.*;
+
+/**
+ * Fast recipe lookup. Recipes are indexed by every item that can be used as one of their
+ * ingredients so that only recipes that can use all items in the grid have to be tested.
+ * Recipes without usable ingredient information (special recipes like map cloning) are
+ * always tested. On top of that the last results are kept in a small LRU cache keyed
+ * by the exact contents of the grid.
+ *
+ * The index is built on first use and rebuilt when the size of the recipe registry changes
+ * or when invalidate() is called. This class is used from both the client and the server
+ * thread so everything is synchronized.
+ */
+class RecipeIndex {
+
+    private static final int CACHE_SIZE = 500;
+
+    private static class Entry {
+        private final int order;        // Order in the registry. The first matching recipe wins
+        private final IRecipe recipe;
+
+        public Entry(int order, IRecipe recipe) {
+            this.order = order;
+            this.recipe = recipe;
+        }
+    }
+
+    private static Map<Item, List<Entry>> recipesByItem = null;
+    private static List<Entry> alwaysTest = null;
+    private static int registrySize = -1;
+
+    // Last results (also when there was no matching recipe), least recently used first
+    private static final Map<GridKey, Optional<IRecipe>> cache = new LinkedHashMap<GridKey, Optional<IRecipe>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<GridKey, Optional<IRecipe>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public static synchronized void invalidate() {
+        recipesByItem = null;
+        alwaysTest = null;
+        registrySize = -1;
+        cache.clear();
+    }
+
+    public static synchronized IRecipe findRecipe(World world, InventoryCrafting inv) {
+        int size = getRegistrySize();
+        if (recipesByItem == null || size != registrySize) {
+            buildIndex(size);
+        }
+
+        GridKey key = new GridKey(inv);
+        Optional<IRecipe> cached = cache.get(key);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+
+        IRecipe recipe = searchRecipe(world, inv);
+        cache.put(key, Optional.ofNullable(recipe));
+        return recipe;
+    }
+
+    private static int getRegistrySize() {
+        return CraftingManager.REGISTRY.getKeys().size();
+    }
+
+    private static void buildIndex(int size) {
+        cache.clear();
+        recipesByItem = new HashMap<>();
+        alwaysTest = new ArrayList<>();
+        registrySize = size;
+
+        int order = 0;
+        for (IRecipe r : CraftingManager.REGISTRY) {
+            if (r != null) {
+                Entry entry = new Entry(order, r);
+                Set<Item> items = getIngredientItems(r);
+                if (items == null) {
+                    alwaysTest.add(entry);
+                } else {
+                    for (Item item : items) {
+                        recipesByItem.computeIfAbsent(item, k -> new ArrayList<>()).add(entry);
+                    }
+                }
+            }
+            order++;
+        }
+    }
+
+    // All items that can be used in this recipe or null if we don't know
+    private static Set<Item> getIngredientItems(IRecipe r) {
+        if (r.isDynamic()) {
+            return null;
+        }
+        List<Ingredient> ingredients = r.getIngredients();
+        if (ingredients.isEmpty()) {
+            return null;
+        }
+        Set<Item> items = new HashSet<>();
+        for (Ingredient ingredient : ingredients) {
+            if (ingredient == Ingredient.EMPTY) {
+                continue;
+            }
+            ItemStack[] stacks = ingredient.getMatchingStacks();
+            if (stacks.length == 0) {
+                return null;
+            }
+            for (ItemStack stack : stacks) {
+                if (stack.isEmpty()) {
+                    return null;
+                }
+                items.add(stack.getItem());
+            }
+        }
+        return items.isEmpty() ? null : items;
+    }
+
+    private static IRecipe searchRecipe(World world, InventoryCrafting inv) {
+        // Take the item in the grid with the fewest candidate recipes. A recipe that
+        // doesn't accept that item can't match.
+        List<Entry> candidates = null;
+        for (int i = 0 ; i < inv.getSizeInventory() ; i++) {
+            ItemStack stack = inv.getStackInSlot(i);
+            if (!stack.isEmpty()) {
+                List<Entry> list = recipesByItem.getOrDefault(stack.getItem(), Collections.emptyList());
+                if (candidates == null || list.size() < candidates.size()) {
+                    candidates = list;
+                }
+            }
+        }
+        if (candidates == null) {
+            candidates = Collections.emptyList();
+        }
+
+        // Test both lists in registry order
+        int i1 = 0;
+        int i2 = 0;
+        while (i1 < candidates.size() || i2 < alwaysTest.size()) {
+            Entry entry;
+            if (i2 >= alwaysTest.size() || (i1 < candidates.size() && candidates.get(i1).order < alwaysTest.get(i2).order)) {
+                entry = candidates.get(i1++);
+            } else {
+                entry = alwaysTest.get(i2++);
+            }
+            if (entry.recipe.matches(inv, world)) {
+                return entry.recipe;
+            }
+        }
+        return null;
+    }
+
+    // The exact contents of a crafting grid (counts are ignored)
+    private static class GridKey {
+        private final Item[] items;
+        private final int[] metas;
+        private final NBTTagCompound[] tags;
+        private final int hash;
+
+        public GridKey(InventoryCrafting inv) {
+            int size = inv.getSizeInventory();
+            items = new Item[size];
+            metas = new int[size];
+            tags = new NBTTagCompound[size];
+            int h = size;
+            for (int i = 0 ; i < size ; i++) {
+                ItemStack stack = inv.getStackInSlot(i);
+                if (!stack.isEmpty()) {
+                    items[i] = stack.getItem();
+                    metas[i] = stack.getMetadata();
+                    tags[i] = stack.getTagCompound() == null ? null : stack.getTagCompound().copy();
+                    h = h * 31 + System.identityHashCode(items[i]);
+                    h = h * 31 + metas[i];
+                    h = h * 31 + Objects.hashCode(tags[i]);
+                } else {
+                    h = h * 31;
+                }
+            }
+            hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            GridKey gridKey = (GridKey) o;
+            return hash == gridKey.hash && Arrays.equals(items, gridKey.items) && Arrays.equals(metas, gridKey.metas) && Arrays.equals(tags, gridKey.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
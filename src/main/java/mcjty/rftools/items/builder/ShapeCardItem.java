@@ -7,7 +7,8 @@ import mcjty.rftools.blocks.builder.BuilderConfiguration;
 import mcjty.rftools.blocks.builder.BuilderTileEntity;
 import mcjty.rftools.items.GenericRFToolsItem;
 import mcjty.rftools.shapes.*;
-import mcjty.rftools.varia.RLE;
+import mcjty.rftools.varia.PositionMap;
+import mcjty.rftools.varia.VarRLE;
 import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.client.renderer.block.model.ModelResourceLocation;
@@ -628,25 +629,25 @@ public class ShapeCardItem extends GenericRFToolsItem implements INBTPreservingI
         }
     }
 
-    private static void placeBlockIfPossible(World worldObj, Map<BlockPos, IBlockState> blocks, int maxSize, int x, int y, int z, IBlockState state, boolean forquarry) {
-        BlockPos c = new BlockPos(x, y, z);
+    private static void placeBlockIfPossible(World worldObj, IBlockCollector blocks, int maxSize, int x, int y, int z, IBlockState state, boolean forquarry) {
         if (worldObj == null) {
-            blocks.put(c, state);
+            blocks.add(x, y, z, state);
             return;
         }
+        BlockPos c = new BlockPos(x, y, z);
         if (forquarry) {
             if (worldObj.isAirBlock(c)) {
                 return;
             }
-            blocks.put(c, state);
+            blocks.add(x, y, z, state);
         } else {
             if (BuilderTileEntity.isEmptyOrReplacable(worldObj, c) && blocks.size() < maxSize) {
-                blocks.put(c, state);
+                blocks.add(x, y, z, state);
             }
         }
     }
 
-    public static int getRenderPositions(ItemStack stack, boolean solid, RLE positions, StatePalette statePalette, IFormula formula, int oy) {
+    public static int getRenderPositions(ItemStack stack, boolean solid, VarRLE positions, StatePalette statePalette, IFormula formula, int oy) {
         BlockPos dimension = ShapeCardItem.getDimension(stack);
         BlockPos clamped = new BlockPos(Math.min(dimension.getX(), 512), Math.min(dimension.getY(), 256), Math.min(dimension.getZ(), 512));
 
@@ -656,21 +657,51 @@ public class ShapeCardItem extends GenericRFToolsItem implements INBTPreservingI
 
         int cnt = 0;
         int y = oy - dy / 2;
+        int x1 = -dx / 2;
+        int z1 = -dz / 2;
+
+        // Calculate the whole plane with bulk row operations. Bit 'ox' of inside[oz] is set if (ox,oz) is inside
+        BitSet[] inside = Formulas.createRows(dz);
+        formula.fillPlane(y, x1, x1 + dx, z1, z1 + dz, inside);
+
+        // For solid shapes we also need to know which neighbours are solid. In 'sameLevel' the
+        // rows are one position larger on every side: bit 'ox+1' of sameLevel[oz+1] is (ox,oz)
+        boolean checkNeighbours = solid && oy > 0 && oy < dy - 1;
+        BitSet[] below = null;
+        BitSet[] above = null;
+        BitSet[] sameLevel = null;
+        if (checkNeighbours) {
+            below = Formulas.createRows(dz);
+            above = Formulas.createRows(dz);
+            sameLevel = Formulas.createRows(dz + 2);
+            for (int oz = 0; oz < dz; oz++) {
+                formula.fillSolidRow(y - 1, z1 + oz, x1, x1 + dx, below[oz]);
+                formula.fillSolidRow(y + 1, z1 + oz, x1, x1 + dx, above[oz]);
+            }
+            for (int oz = -1; oz <= dz; oz++) {
+                formula.fillSolidRow(y, z1 + oz, x1 - 1, x1 + dx + 1, sameLevel[oz + 1]);
+            }
+        }
+
+        boolean hasStates = formula.hasStates();
         for (int ox = 0; ox < dx; ox++) {
-            int x = ox - dx / 2;
+            int x = x1 + ox;
             for (int oz = 0; oz < dz; oz++) {
-                int z = oz - dz / 2;
+                int z = z1 + oz;
                 int v = 255;
-                if (formula.isInside(x, y, z)) {
+                if (inside[oz].get(ox)) {
                     cnt++;
-                    IBlockState lastState = formula.getLastState();
-                    if (solid) {
-                        if (ox == 0 || ox == dx - 1 || oy == 0 || oy == dy - 1 || oz == 0 || oz == dz - 1) {
-                            v = statePalette.alloc(lastState, -1) + 1;
-                        } else if (formula.isVisible(x, y, z)) {
-                            v = statePalette.alloc(lastState, -1) + 1;
+                    boolean visible = true;
+                    if (checkNeighbours && ox > 0 && ox < dx - 1 && oz > 0 && oz < dz - 1) {
+                        visible = !(below[oz].get(ox) && above[oz].get(ox)
+                                && sameLevel[oz + 1].get(ox) && sameLevel[oz + 1].get(ox + 2)
+                                && sameLevel[oz].get(ox + 1) && sameLevel[oz + 2].get(ox + 1));
+                    }
+                    if (visible) {
+                        IBlockState lastState = null;
+                        if (hasStates && formula.isInside(x, y, z)) {
+                            lastState = formula.getLastState();
                         }
-                    } else {
                         v = statePalette.alloc(lastState, -1) + 1;
                     }
                 }
@@ -682,7 +713,7 @@ public class ShapeCardItem extends GenericRFToolsItem implements INBTPreservingI
 
 
     // Used for saving
-    public static int getDataPositions(ItemStack stack, Shape shape, boolean solid, RLE positions, StatePalette statePalette) {
+    public static int getDataPositions(ItemStack stack, Shape shape, boolean solid, VarRLE positions, StatePalette statePalette) {
         BlockPos dimension = ShapeCardItem.getDimension(stack);
         BlockPos clamped = new BlockPos(Math.min(dimension.getX(), 512), Math.min(dimension.getY(), 256), Math.min(dimension.getZ(), 512));
 
@@ -720,7 +751,27 @@ public class ShapeCardItem extends GenericRFToolsItem implements INBTPreservingI
 
 
 
-    public static void composeFormula(ItemStack shapeCard, IFormula formula, World worldObj, BlockPos thisCoord, BlockPos dimension, BlockPos offset, Map<BlockPos, IBlockState> blocks, int maxSize, boolean solid, boolean forquarry, ChunkPos chunk) {
+    /**
+     * Compose the positions of the shape in 'blocks' (relative to 'thisCoord'). Block states are not kept
+     */
+    public static void composeFormula(ItemStack shapeCard, IFormula formula, World worldObj, BlockPos thisCoord, BlockPos dimension, BlockPos offset, PositionMap blocks, int maxSize, boolean solid, boolean forquarry, ChunkPos chunk) {
+        int xCoord = thisCoord.getX();
+        int yCoord = thisCoord.getY();
+        int zCoord = thisCoord.getZ();
+        composeFormula(shapeCard, formula, worldObj, thisCoord, dimension, offset, new IBlockCollector() {
+            @Override
+            public int size() {
+                return blocks.size();
+            }
+
+            @Override
+            public void add(int x, int y, int z, IBlockState state) {
+                blocks.add(x - xCoord, y - yCoord, z - zCoord);
+            }
+        }, maxSize, solid, forquarry, chunk);
+    }
+
+    public static void composeFormula(ItemStack shapeCard, IFormula formula, World worldObj, BlockPos thisCoord, BlockPos dimension, BlockPos offset, IBlockCollector blocks, int maxSize, boolean solid, boolean forquarry, ChunkPos chunk) {
         int xCoord = thisCoord.getX();
         int yCoord = thisCoord.getY();
         int zCoord = thisCoord.getZ();
@@ -732,19 +783,60 @@ public class ShapeCardItem extends GenericRFToolsItem implements INBTPreservingI
         formula = formula.correctFormula(solid);
         formula.setup(thisCoord, dimension, offset, shapeCard != null ? shapeCard.getTagCompound() : null);
 
-        for (int ox = 0 ; ox < dx ; ox++) {
-            int x = tl.getX() + ox;
-            if (xInChunk(x, chunk)) {
-                for (int oz = 0 ; oz < dz ; oz++) {
+        // Only iterate over the part of the shape that is inside the chunk
+        int ox1 = 0;
+        int ox2 = dx;
+        int oz1 = 0;
+        int oz2 = dz;
+        if (chunk != null) {
+            ox1 = Math.max(0, (chunk.x << 4) - tl.getX());
+            ox2 = Math.min(dx, (chunk.x << 4) + 16 - tl.getX());
+            oz1 = Math.max(0, (chunk.z << 4) - tl.getZ());
+            oz2 = Math.min(dz, (chunk.z << 4) + 16 - tl.getZ());
+        }
+
+        if (ox1 >= ox2 || oz1 >= oz2) {
+            return;
+        }
+
+        // The shape is calculated with bulk row operations (IFormula.fillRow) for groups of at most 64
+        // x positions. The blocks are still added in the same x/z/y order as testing them one by one
+        // would do so that the result is the same when 'maxSize' is reached
+        int nz = oz2 - oz1;
+        long[] rows = new long[nz * dy];
+        BitSet row = new BitSet();
+        boolean hasStates = formula.hasStates();
+        for (int gx = ox1 ; gx < ox2 ; gx += 64) {
+            int gx2 = Math.min(ox2, gx + 64);
+            int xa = tl.getX() + gx;
+            int xb = tl.getX() + gx2;
+            for (int oz = oz1 ; oz < oz2 ; oz++) {
+                int z = tl.getZ() + oz;
+                for (int oy = 0 ; oy < dy ; oy++) {
+                    int y = tl.getY() + oy;
+                    formula.fillRow(y, z, xa, xb, row);
+                    long bits = 0;
+                    for (int i = row.nextSetBit(0) ; i >= 0 && i < 64 ; i = row.nextSetBit(i + 1)) {
+                        bits |= 1L << i;
+                    }
+                    rows[(oz - oz1) * dy + oy] = bits;
+                }
+            }
+
+            for (int ox = gx ; ox < gx2 ; ox++) {
+                int x = tl.getX() + ox;
+                long mask = 1L << (ox - gx);
+                for (int oz = oz1 ; oz < oz2 ; oz++) {
                     int z = tl.getZ() + oz;
-                    if (zInChunk(z, chunk)) {
-                        for (int oy = 0; oy < dy; oy++) {
+                    int index = (oz - oz1) * dy;
+                    for (int oy = 0 ; oy < dy ; oy++) {
+                        if ((rows[index + oy] & mask) != 0) {
                             int y = tl.getY() + oy;
-//                            if (y >= yCoord-dy/2 && y < yCoord+dy/2) {    @todo!!!
-                                if (formula.isInside(x, y, z)) {
-                                    placeBlockIfPossible(worldObj, blocks, maxSize, x, y, z, formula.getLastState(), forquarry);
-                                }
-//                            }
+                            IBlockState state = null;
+                            if (hasStates && formula.isInside(x, y, z)) {
+                                state = formula.getLastState();
+                            }
+                            placeBlockIfPossible(worldObj, blocks, maxSize, x, y, z, state, forquarry);
                         }
                     }
                 }
@@ -792,11 +884,11 @@ public class ShapeCardItem extends GenericRFToolsItem implements INBTPreservingI
         BlockPos offset = ShapeCardItem.getOffset(card);
         BlockPos dimension = ShapeCardItem.getDimension(card);
 
-        RLE positions = new RLE();
+        VarRLE positions = new VarRLE();
         StatePalette statePalette = new StatePalette();
         int cnt = getDataPositions(card, shape, solid, positions, statePalette);
 
-        byte[] data = positions.getData();
+        byte[] data = positions.toByteArray();
 
         File dataDir = new File("rftoolsscans");
         dataDir.mkdirs();
@@ -809,7 +901,7 @@ public class ShapeCardItem extends GenericRFToolsItem implements INBTPreservingI
                 String r = state.getBlock().getRegistryName().toString();
                 writer.println(r + "@" + state.getBlock().getMetaFromState(state));
             }
-            writer.println("DATA");
+            writer.println("VDATA");
 
             byte[] encoded = Base64.getEncoder().encode(data);
             writer.write(new String(encoded));
@@ -863,7 +955,7 @@ public class ShapeCardItem extends GenericRFToolsItem implements INBTPreservingI
             BlockPos off = parse(s.substring(4));
             s = reader.readLine();
             StatePalette statePalette = new StatePalette();
-            while (!"DATA".equals(s)) {
+            while (!"DATA".equals(s) && !"VDATA".equals(s)) {
                 String[] split = StringUtils.split(s, '@');
                 Block block = ForgeRegistries.BLOCKS.getValue(new ResourceLocation(split[0]));
                 int meta = Integer.parseInt(split[1]);
@@ -875,8 +967,13 @@ public class ShapeCardItem extends GenericRFToolsItem implements INBTPreservingI
                 statePalette.add(block.getStateFromMeta(meta));
                 s = reader.readLine();
             }
+            // Files with 'DATA' still use the old run length encoding
+            boolean legacy = "DATA".equals(s);
             s = reader.readLine();
             byte[] decoded = Base64.getDecoder().decode(s.getBytes());
+            if (legacy) {
+                decoded = VarRLE.fromLegacy(decoded).toByteArray();
+            }
 
             setDataFromFile(scanId, card, dim, off, decoded, statePalette);
         } catch (FileNotFoundException e) {
@@ -3,6 +3,7 @@ package mcjty.rftools.shapes;
 import mcjty.lib.varia.Check32;
 import mcjty.rftools.blocks.shaper.ScannerConfiguration;
 import mcjty.rftools.items.builder.ShapeCardItem;
+import mcjty.rftools.varia.VarRLE;
 import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.NBTTagCompound;
@@ -13,6 +14,7 @@ import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.fml.common.registry.ForgeRegistries;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 public class Formulas {
@@ -99,22 +101,11 @@ public class Formulas {
             if (scanId != 0) {
                 Scan scan = ScanDataManager.getScans().loadScan(scanId);
                 palette = new ArrayList<>(scan.getMaterialPalette());
-                byte[] datas = scan.getRledata();
                 data = new byte[dx * dy * dz];
-                int j = 0;
-                for (int i = 0; i < datas.length / 2; i++) {
-                    int cnt = (datas[i * 2]) & 0xff;
-                    int c = datas[i * 2 + 1] & 0xff;
-                    if (c == 255) {
-                        c = 0;
-                    }
-                    while (cnt > 0 && j < data.length) {
-                        data[j++] = (byte) c;
-                        cnt--;
-                    }
-                    if (j >= data.length) {
-                        break;
-                    }
+                // Decode a column (all y for one x/z) at a time. 255 means empty
+                VarRLE rle = VarRLE.wrap(scan.getRledata());
+                for (int j = 0; j < data.length; j += dy) {
+                    rle.readRow(data, j, dy, 255);
                 }
             }
         }
@@ -183,6 +174,28 @@ public class Formulas {
         public IBlockState getLastState() {
             return lastState;
         }
+
+        @Override
+        public boolean hasStates() {
+            return true;
+        }
+
+        @Override
+        public void fillRow(int y, int z, int xa, int xb, BitSet out) {
+            out.clear();
+            if (data == null || y < y1 || y >= y1+dy || z < z1 || z >= z1+dz) {
+                return;
+            }
+            int start = Math.max(xa, x1);
+            int end = Math.min(xb, x1+dx);
+            int index = (start-x1) * dy * dz + (z-z1) * dy + (y-y1);
+            for (int x = start ; x < end ; x++) {
+                if (data[index] != 0) {
+                    out.set(x - xa);
+                }
+                index += dy * dz;
+            }
+        }
     }
 
     static class FormulaComposition implements IFormula {
@@ -193,6 +206,10 @@ public class Formulas {
         private List<ShapeModifier> modifiers = new ArrayList<>();
         private List<IBlockState> blockStates = new ArrayList<>();
 
+        // Rows used by fillRow()
+        private final BitSet childRow = new BitSet();
+        private final BitSet insideRow = new BitSet();
+
         @Override
         public void setup(BlockPos thisCoord, BlockPos dimension, BlockPos offset, NBTTagCompound card) {
             this.thisCoord = thisCoord;
@@ -291,36 +308,7 @@ public class Formulas {
 
                 boolean inside = false;
                 if (bounds.in(x, y, z)) {
-                    int tx = x;
-                    int ty = y;
-                    int tz = z;
-                    BlockPos o = bounds.getOffset();
-                    switch (modifier.getRotation()) {
-                        default:
-                        case NONE:
-                            break;
-                        case X:
-                            tx = x;
-                            ty = (z-o.getZ()) + o.getY();
-                            tz = (y-o.getY()) + o.getZ();
-                            break;
-                        case Y:
-                            tx = (z-o.getZ()) + o.getX();
-                            ty = y;
-                            tz = (x-o.getX()) + o.getZ();
-                            break;
-                        case Z:
-                            tx = (y-o.getY()) + o.getX();
-                            ty = (x-o.getX()) + o.getY();
-                            tz = z;
-                            break;
-                    }
-
-                    if (modifier.isFlipY()) {
-                        ty = bounds.getP1().getY() + bounds.getP2().getY() - 1 - ty;
-                    }
-
-                    inside = formula.isInside(tx+thisCoord.getX(), ty+thisCoord.getY(), tz+thisCoord.getZ());
+                    inside = isInsideChild(formula, bounds, modifier, x, y, z);
                 }
 
                 switch (modifier.getOperation()) {
@@ -359,6 +347,100 @@ public class Formulas {
         public boolean isCustom() {
             return true;
         }
+
+        @Override
+        public boolean hasStates() {
+            return true;
+        }
+
+        @Override
+        public void fillRow(int y, int z, int xa, int xb, BitSet out) {
+            out.clear();
+            y -= thisCoord.getY();
+            z -= thisCoord.getZ();
+            int rxa = xa - thisCoord.getX();
+            int rxb = xb - thisCoord.getX();
+            for (int i = 0 ; i < formulas.size() ; i++) {
+                IFormula formula = formulas.get(i);
+                Bounds bounds = this.bounds.get(i);
+                ShapeModifier modifier = modifiers.get(i);
+
+                insideRow.clear();
+                int start = Math.max(rxa, bounds.getP1().getX());
+                int end = Math.min(rxb, bounds.getP2().getX());
+                if (start < end && y >= bounds.getP1().getY() && y < bounds.getP2().getY() && z >= bounds.getP1().getZ() && z < bounds.getP2().getZ()) {
+                    BlockPos o = bounds.getOffset();
+                    switch (modifier.getRotation()) {
+                        case NONE:
+                        case X: {
+                            // For these rotations a row along x is still a row along x for the child
+                            int ty = y;
+                            int tz = z;
+                            if (modifier.getRotation() == ShapeRotation.X) {
+                                ty = (z-o.getZ()) + o.getY();
+                                tz = (y-o.getY()) + o.getZ();
+                            }
+                            if (modifier.isFlipY()) {
+                                ty = bounds.getP1().getY() + bounds.getP2().getY() - 1 - ty;
+                            }
+                            formula.fillRow(ty+thisCoord.getY(), tz+thisCoord.getZ(), start+thisCoord.getX(), end+thisCoord.getX(), childRow);
+                            copyRow(childRow, end - start, insideRow, start - rxa);
+                            break;
+                        }
+                        default:
+                            for (int x = start ; x < end ; x++) {
+                                if (isInsideChild(formula, bounds, modifier, x, y, z)) {
+                                    insideRow.set(x - rxa);
+                                }
+                            }
+                            break;
+                    }
+                }
+
+                switch (modifier.getOperation()) {
+                    case UNION:
+                        out.or(insideRow);
+                        break;
+                    case SUBTRACT:
+                        out.andNot(insideRow);
+                        break;
+                    case INTERSECT:
+                        out.and(insideRow);
+                        break;
+                }
+            }
+        }
+
+        // Test a single position (relative to thisCoord) for a child. The position must be inside the bounds
+        private boolean isInsideChild(IFormula formula, Bounds bounds, ShapeModifier modifier, int x, int y, int z) {
+            int tx = x;
+            int ty = y;
+            int tz = z;
+            BlockPos o = bounds.getOffset();
+            switch (modifier.getRotation()) {
+                default:
+                case NONE:
+                    break;
+                case X:
+                    ty = (z-o.getZ()) + o.getY();
+                    tz = (y-o.getY()) + o.getZ();
+                    break;
+                case Y:
+                    tx = (z-o.getZ()) + o.getX();
+                    tz = (x-o.getX()) + o.getZ();
+                    break;
+                case Z:
+                    tx = (y-o.getY()) + o.getX();
+                    ty = (x-o.getX()) + o.getY();
+                    break;
+            }
+
+            if (modifier.isFlipY()) {
+                ty = bounds.getP1().getY() + bounds.getP2().getY() - 1 - ty;
+            }
+
+            return formula.isInside(tx+thisCoord.getX(), ty+thisCoord.getY(), tz+thisCoord.getZ());
+        }
     }
 
     static class FormulaTorus implements IFormula {
@@ -390,6 +472,22 @@ public class Formulas {
             double f = rr * rr + (y - centery) * (y - centery) - smallRadius * smallRadius;
             return f < 0;
         }
+
+        @Override
+        public void fillRow(int y, int z, int x1, int x2, BitSet out) {
+            out.clear();
+            // Nothing can be inside outside the bounding box of the torus
+            if (Math.abs(y - centery) >= smallRadius || Math.abs(z - centerz) >= bigRadius + smallRadius) {
+                return;
+            }
+            int start = Math.max(x1, (int) Math.floor(centerx - bigRadius - smallRadius));
+            int end = Math.min(x2, (int) Math.ceil(centerx + bigRadius + smallRadius) + 1);
+            for (int x = start ; x < end ; x++) {
+                if (isInside(x, y, z)) {
+                    out.set(x - x1);
+                }
+            }
+        }
     }
 
     static class FormulaHeart implements IFormula {
@@ -459,6 +557,11 @@ public class Formulas {
             double distance = Math.sqrt(squaredDistance3D(centerx, centery, centerz, x, y, z, dx2, dy2, dz2));
             return ((int) (distance * (davg / 2 + 1))) <= (davg / 2 - 1);
         }
+
+        @Override
+        public void fillRow(int y, int z, int x1, int x2, BitSet out) {
+            fillInterval(this, y, z, x1, x2, Math.round(centerx), out);
+        }
     }
 
     static class FormulaTopDome implements IFormula {
@@ -497,6 +600,11 @@ public class Formulas {
             double distance = Math.sqrt(squaredDistance3D(centerx, centery, centerz, x, y, z, dx2, dy2, dz2));
             return ((int) (distance * (davg / 2 + 1))) <= (davg / 2 - 1);
         }
+
+        @Override
+        public void fillRow(int y, int z, int x1, int x2, BitSet out) {
+            fillInterval(this, y, z, x1, x2, Math.round(centerx), out);
+        }
     }
 
     static class FormulaBottomDome implements IFormula {
@@ -535,6 +643,11 @@ public class Formulas {
             double distance = Math.sqrt(squaredDistance3D(centerx, centery, centerz, x, y, z, dx2, dy2, dz2));
             return ((int) (distance * (davg / 2 + 1))) <= (davg / 2 - 1);
         }
+
+        @Override
+        public void fillRow(int y, int z, int x1, int x2, BitSet out) {
+            fillInterval(this, y, z, x1, x2, Math.round(centerx), out);
+        }
     }
 
     static class FormulaBox implements IFormula {
@@ -571,6 +684,25 @@ public class Formulas {
         public boolean isBorder(int x, int y, int z) {
             return (x == x1 || x == x2-1) || (y == y1 || y == y2-1) || (z == z1 || z == z2-1);
         }
+
+        @Override
+        public void fillRow(int y, int z, int xa, int xb, BitSet out) {
+            out.clear();
+            if (y >= y1 && y < y2 && z >= z1 && z < z2) {
+                setRange(out, xa, xb, x1, x2);
+            }
+        }
+
+        @Override
+        public void fillBorderRow(int y, int z, int xa, int xb, BitSet out, BitSet[] scratch) {
+            out.clear();
+            if ((y == y1 || y == y2-1) || (z == z1 || z == z2-1)) {
+                out.set(0, xb - xa);
+            } else {
+                setRange(out, xa, xb, x1, x1+1);
+                setRange(out, xa, xb, x2-1, x2);
+            }
+        }
     }
 
     static class FormulaCappedCylinder implements IFormula {
@@ -610,6 +742,11 @@ public class Formulas {
             double distance = Math.sqrt(squaredDistance2D(centerx, centerz, x, z, dx2, dz2));
             return ((int) (distance * (davg / 2 + 1))) <= (davg / 2 - 1);
         }
+
+        @Override
+        public void fillRow(int y, int z, int x1, int x2, BitSet out) {
+            fillInterval(this, y, z, x1, x2, Math.round(centerx), out);
+        }
     }
 
     static class FormulaCylinder implements IFormula {
@@ -641,6 +778,11 @@ public class Formulas {
             double distance = Math.sqrt(squaredDistance2D(centerx, centerz, x, z, dx2, dz2));
             return ((int) (distance * (davg / 2 + 1))) <= (davg / 2 - 1);
         }
+
+        @Override
+        public void fillRow(int y, int z, int x1, int x2, BitSet out) {
+            fillInterval(this, y, z, x1, x2, Math.round(centerx), out);
+        }
     }
 
     static class FormulaCone implements IFormula {
@@ -676,6 +818,11 @@ public class Formulas {
             double distance = Math.sqrt(squaredDistance2D(centerx, centerz, x, z, dx2, dz2));
             return ((int) (distance * (davg / 2 + 1))) <= (davg / 2 - 1) *  (topy-y) / dy;
         }
+
+        @Override
+        public void fillRow(int y, int z, int x1, int x2, BitSet out) {
+            fillInterval(this, y, z, x1, x2, Math.round(centerx), out);
+        }
     }
     static class FormulaPrism implements IFormula {
         private int x1;
@@ -710,6 +857,109 @@ public class Formulas {
             int dy = y - y1;
             return (x >= x1 + dy && x < x2 - dy && z >= z1 + dy && z < z2 - dy);
         }
+
+        @Override
+        public void fillRow(int y, int z, int xa, int xb, BitSet out) {
+            out.clear();
+            if (y < y1 || y >= y2) {
+                return;
+            }
+            int dy = y - y1;
+            if (z >= z1 + dy && z < z2 - dy) {
+                setRange(out, xa, xb, x1 + dy, x2 - dy);
+            }
+        }
+    }
+
+    public static BitSet[] createRows(int count) {
+        BitSet[] rows = new BitSet[count];
+        for (int i = 0 ; i < count ; i++) {
+            rows[i] = new BitSet();
+        }
+        return rows;
+    }
+
+    // Set the bits for [from, to) in a row that starts at 'start' and ends (exclusive) at 'end'
+    private static void setRange(BitSet out, int start, int end, int from, int to) {
+        from = Math.max(from, start);
+        to = Math.min(to, end);
+        if (from < to) {
+            out.set(from - start, to - start);
+        }
+    }
+
+    // Copy the first n bits of 'src' to 'dst' starting at bit 'offset'. Works run by run.
+    static void copyRow(BitSet src, int n, BitSet dst, int offset) {
+        int a = src.nextSetBit(0);
+        while (a >= 0 && a < n) {
+            int b = Math.min(src.nextClearBit(a), n);
+            dst.set(a + offset, b + offset);
+            a = src.nextSetBit(b);
+        }
+    }
+
+    /**
+     * 'row' contains n+2 positions: one extra position on each side. Put the middle
+     * n positions in 'inside' and the positions that also have both x neighbours inside
+     * in 'interior'
+     */
+    static void splitRow(BitSet row, int n, BitSet inside, BitSet interior) {
+        inside.clear();
+        interior.clear();
+        int a = row.nextSetBit(0);
+        while (a >= 0 && a < n + 2) {
+            int b = Math.min(row.nextClearBit(a), n + 2);
+            int from = Math.max(a - 1, 0);
+            int to = Math.min(b - 1, n);
+            if (from < to) {
+                inside.set(from, to);
+            }
+            to = Math.min(b - 2, n);
+            if (a < to) {
+                interior.set(a, to);
+            }
+            a = row.nextSetBit(b);
+        }
+    }
+
+    /**
+     * For shapes where the positions inside a row always form a single interval around
+     * 'center' (when the row contains anything at all). Instead of testing every position
+     * we do a binary search for both ends of that interval.
+     */
+    private static void fillInterval(IFormula formula, int y, int z, int x1, int x2, int center, BitSet out) {
+        out.clear();
+        if (x1 >= x2) {
+            return;
+        }
+        int c = Math.max(x1, Math.min(x2 - 1, center));
+        if (!formula.isInside(c, y, z)) {
+            return;
+        }
+        // Find the first position that is inside
+        int lo = x1;
+        int hi = c;
+        while (lo < hi) {
+            int m = (lo + hi) >>> 1;
+            if (formula.isInside(m, y, z)) {
+                hi = m;
+            } else {
+                lo = m + 1;
+            }
+        }
+        int first = lo;
+        // Find the last position that is inside
+        lo = c;
+        hi = x2 - 1;
+        while (lo < hi) {
+            int m = (lo + hi + 1) >>> 1;
+            if (formula.isInside(m, y, z)) {
+                lo = m;
+            } else {
+                hi = m - 1;
+            }
+        }
+        out.set(first - x1, lo - x1 + 1);
     }
 
     private static float squaredDistance3D(float cx, float cy, float cz, float x1, float y1, float z1, float dx2, float dy2, float dz2) {
@@ -0,0 +1,15 @@
+package mcjty.rftools.shapes;
+
+import net.minecraft.block.state.IBlockState;
+
+/**
+ * Receives the positions (and optional block state) of a shape
+ * as they are composed by ShapeCardItem.composeFormula().
+ */
+public interface IBlockCollector {
+
+    /// Number of positions that were added so far
+    int size();
+
+    void add(int x, int y, int z, IBlockState state);
+}
@@ -6,6 +6,8 @@ import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.math.BlockPos;
 
+import java.util.BitSet;
+
 public interface IFormula {
 
     void setup(BlockPos thisCoord, BlockPos dimension, BlockPos offset, NBTTagCompound card);
@@ -54,11 +56,76 @@ public interface IFormula {
 
     default boolean isCustom() { return false; }
 
+    /// Return true if this formula can return a blockstate from getLastState()
+    default boolean hasStates() { return false; }
+
+    /**
+     * Bulk version of isInside() for a row along the x axis. 'out' is cleared and then
+     * bit 'x - x1' is set for every x in [x1, x2) for which isInside(x, y, z) is true.
+     * Formulas override this if they can do better than testing every position. Note that
+     * getLastState() is not valid after calling this.
+     */
+    default void fillRow(int y, int z, int x1, int x2, BitSet out) {
+        out.clear();
+        for (int x = x1 ; x < x2 ; x++) {
+            if (isInside(x, y, z)) {
+                out.set(x - x1);
+            }
+        }
+    }
+
+    /// Call fillRow() for all rows [z1, z2) of a plane. out[z - z1] receives the row for z
+    default void fillPlane(int y, int x1, int x2, int z1, int z2, BitSet[] out) {
+        for (int z = z1 ; z < z2 ; z++) {
+            fillRow(y, z, x1, x2, out[z - z1]);
+        }
+    }
+
+    /**
+     * Bulk version of isBorder(). This is calculated from the neighbouring rows with
+     * bitwise operations. 'scratch' must contain at least six BitSets that can be used
+     * for the intermediate rows.
+     */
+    default void fillBorderRow(int y, int z, int x1, int x2, BitSet out, BitSet[] scratch) {
+        int n = x2 - x1;
+        BitSet mid = scratch[0];
+        BitSet interior = scratch[1];
+        fillRow(y, z, x1 - 1, x2 + 1, mid);
+        Formulas.splitRow(mid, n, out, interior);
+        if (out.isEmpty()) {
+            return;
+        }
+        BitSet other = scratch[2];
+        fillRow(y - 1, z, x1, x2, other);
+        interior.and(other);
+        fillRow(y + 1, z, x1, x2, other);
+        interior.and(other);
+        fillRow(y, z - 1, x1, x2, other);
+        interior.and(other);
+        fillRow(y, z + 1, x1, x2, other);
+        interior.and(other);
+        out.andNot(interior);
+    }
+
+    /// Like fillRow() but positions that contain a non solid block (see isClear()) are not set
+    default void fillSolidRow(int y, int z, int x1, int x2, BitSet out) {
+        fillRow(y, z, x1, x2, out);
+        if (hasStates()) {
+            for (int i = out.nextSetBit(0) ; i >= 0 && i < x2 - x1 ; i = out.nextSetBit(i + 1)) {
+                if (isClear(x1 + i, y, z)) {
+                    out.clear(i);
+                }
+            }
+        }
+    }
+
     default IFormula correctFormula(boolean solid) {
         if (solid) {
             return this;
         } else {
             return new IFormula() {
+                private final BitSet[] scratch = Formulas.createRows(6);
+
                 @Override
                 public void setup(BlockPos thisCoord, BlockPos dimension, BlockPos offset, NBTTagCompound card) {
                     IFormula.this.setup(thisCoord, dimension, offset, card);
@@ -83,6 +150,21 @@ public interface IFormula {
                 public boolean isBorder(int x, int y, int z) {
                     return IFormula.this.isBorder(x, y, z);
                 }
+
+                @Override
+                public boolean hasStates() {
+                    return IFormula.this.hasStates();
+                }
+
+                @Override
+                public void fillRow(int y, int z, int x1, int x2, BitSet out) {
+                    IFormula.this.fillBorderRow(y, z, x1, x2, out, scratch);
+                }
+
+                @Override
+                public void fillBorderRow(int y, int z, int x1, int x2, BitSet out, BitSet[] scratch) {
+                    IFormula.this.fillBorderRow(y, z, x1, x2, out, scratch);
+                }
             };
         }
     }
@@ -10,6 +10,8 @@ import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 
+import java.util.concurrent.Future;
+
 public class PacketRequestShapeData implements IMessage {
     private ItemStack card;
     private ShapeID id;
@@ -44,6 +46,15 @@ public class PacketRequestShapeData implements IMessage {
         private void handle(PacketRequestShapeData message, MessageContext ctx) {
 
             Shape shape = ShapeCardItem.getShape(message.card);
+            if (shape.isScan() && message.card.hasTagCompound()) {
+                // Don't wait for the disk on the main thread. Try again when the scan is read
+                int scanId = message.card.getTagCompound().getInteger("scanid");
+                Future<?> future = ScanDataManager.getScans().requestLoad(scanId);
+                if (!future.isDone()) {
+                    ShapeDataManagerServer.runWhenDone(future, () -> handle(message, ctx));
+                    return;
+                }
+            }
             boolean solid = ShapeCardItem.isSolid(message.card);
             BlockPos dimension = ShapeCardItem.getDimension(message.card);
 
@@ -60,9 +71,7 @@ public class PacketRequestShapeData implements IMessage {
             formula = formula.correctFormula(solid);
             formula.setup(new BlockPos(0, 0, 0), clamped, new BlockPos(0, 0, 0), message.card.getTagCompound());
 
-            for (int y = 0 ; y < dy ; y++) {
-                ShapeDataManagerServer.pushWork(message.id, card, y, formula, ctx.getServerHandler().player);
-            }
+            ShapeDataManagerServer.pushWork(message.id, card, formula, dy, ctx.getServerHandler().player);
 
 
 //            RLE positions = new RLE();
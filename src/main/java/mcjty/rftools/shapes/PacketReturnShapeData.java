@@ -4,7 +4,7 @@ import io.netty.buffer.ByteBuf;
 import mcjty.lib.network.NetworkTools;
 import mcjty.rftools.RFTools;
 import mcjty.rftools.blocks.builder.BuilderSetup;
-import mcjty.rftools.varia.RLE;
+import mcjty.rftools.varia.VarRLE;
 import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
@@ -17,7 +17,7 @@ import net.minecraftforge.fml.common.registry.ForgeRegistries;
 
 public class PacketReturnShapeData implements IMessage {
     private ShapeID id;
-    private RLE positions;
+    private VarRLE positions;
     private StatePalette statePalette;
     private int count;
     private int offsetY;
@@ -50,10 +50,11 @@ public class PacketReturnShapeData implements IMessage {
         if (size == 0) {
             positions = null;
         } else {
-            positions = new RLE();
+            // Copy the data. A buffer from buf.readBytes() would come from the packet's
+            // allocator and would never be released
             byte[] data = new byte[size];
             buf.readBytes(data);
-            positions.setData(data);
+            positions = VarRLE.wrap(data);
         }
     }
 
@@ -81,15 +82,18 @@ public class PacketReturnShapeData implements IMessage {
         if (positions == null) {
             buf.writeInt(0);
         } else {
-            buf.writeInt(positions.getData().length);
-            buf.writeBytes(positions.getData());
+            // Copy straight from the encoder. The indices of the encoder buffer are not
+            // changed so the same packet can be sent to several players
+            ByteBuf data = positions.getBuffer();
+            buf.writeInt(data.writerIndex());
+            buf.writeBytes(data, 0, data.writerIndex());
         }
     }
 
     public PacketReturnShapeData() {
     }
 
-    public PacketReturnShapeData(ShapeID id, RLE positions, StatePalette statePalette, BlockPos dimension, int count, int offsetY, String msg) {
+    public PacketReturnShapeData(ShapeID id, VarRLE positions, StatePalette statePalette, BlockPos dimension, int count, int offsetY, String msg) {
         this.id = id;
         this.positions = positions;
         this.statePalette = statePalette;
@@ -111,7 +115,7 @@ public class PacketReturnShapeData implements IMessage {
             int dy = message.dimension.getY();
             int dz = message.dimension.getZ();
 
-            RLE rle = message.positions;
+            VarRLE rle = message.positions;
             RenderData.RenderPlane plane = null;
 
             if (rle != null) {
@@ -123,14 +127,16 @@ public class PacketReturnShapeData implements IMessage {
                 int y = oy - dy / 2;
 
                 RenderData.RenderStrip strips[] = new RenderData.RenderStrip[dx];
+                int[] row = new int[dz];
                 for (int ox = 0; ox < dx; ox++) {
                     int x = ox - dx / 2;
 
                     RenderData.RenderStrip strip = new RenderData.RenderStrip(x);
                     strips[ox] = strip;
 
+                    rle.readRow(row, dz);
                     for (int oz = 0; oz < dz; oz++) {
-                        int data = rle.read();
+                        int data = row[oz];
                         if (data < 255) {
                             if (data == 0) {
                                 strip.add(dummy);
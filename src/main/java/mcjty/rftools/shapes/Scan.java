@@ -1,5 +1,6 @@
 package mcjty.rftools.shapes;
 
+import mcjty.rftools.varia.VarRLE;
 import net.minecraft.block.Block;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
@@ -44,6 +45,15 @@ public class Scan {
         dirtyCounter++;
     }
 
+    /**
+     * Forget the data of this scan (but not the dirty counter). It will be read
+     * from disk again when it is needed
+     */
+    public void unloadData() {
+        rledata = null;
+        materialPalette = new ArrayList<>();
+    }
+
     public void setDirtyCounter(int dirtyCounter) {
         this.dirtyCounter = dirtyCounter;
     }
@@ -69,7 +79,8 @@ public class Scan {
     }
 
     public void writeToNBTExternal(NBTTagCompound tagCompound) {
-        tagCompound.setByteArray("data", rledata == null ? new byte[0] : rledata);
+        // 'vdata' uses the VarRLE encoding. Old scans have their data in 'data'
+        tagCompound.setByteArray("vdata", rledata == null ? new byte[0] : rledata);
         NBTTagList pal = new NBTTagList();
         for (IBlockState state : materialPalette) {
             NBTTagCompound tc = new NBTTagCompound();
@@ -101,6 +112,7 @@ public class Scan {
     }
 
     public void readFromNBTExternal(NBTTagCompound tagCompound) {
+        materialPalette = new ArrayList<>();
         NBTTagList list = tagCompound.getTagList("scanpal", Constants.NBT.TAG_COMPOUND);
         for (int i = 0; i < list.tagCount(); i++) {
             NBTTagCompound tc = list.getCompoundTagAt(i);
@@ -110,7 +122,11 @@ public class Scan {
             }
             materialPalette.add(block.getStateFromMeta(tc.getInteger("m")));
         }
-        rledata = tagCompound.getByteArray("data");
+        if (tagCompound.hasKey("vdata")) {
+            rledata = tagCompound.getByteArray("vdata");
+        } else {
+            rledata = VarRLE.fromLegacy(tagCompound.getByteArray("data")).toByteArray();
+        }
         dataDim = new BlockPos(tagCompound.getInteger("scandimx"), tagCompound.getInteger("scandimy"), tagCompound.getInteger("scandimz"));
         dataOffset = new BlockPos(tagCompound.getInteger("scanoffx"), tagCompound.getInteger("scanoffy"), tagCompound.getInteger("scanoffz"));
     }
@@ -18,7 +18,10 @@ import net.minecraftforge.common.util.Constants;
 import javax.annotation.Nonnull;
 import java.io.*;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.*;
 
 public class ScanDataManager extends AbstractWorldData<ScanDataManager> {
 
@@ -31,6 +34,14 @@ public class ScanDataManager extends AbstractWorldData<ScanDataManager> {
     // This data is not persisted
     private final Map<Integer, ScanExtraData> scanData = new HashMap<>();
 
+    // Size of the data of all scans that have their data in memory. Least recently used first
+    private final LinkedHashMap<Integer, Integer> loadedSizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long loadedBytes = 0;
+    // Scan files that are being read
+    private final Map<Integer, CompletableFuture<NBTTagCompound>> loading = new HashMap<>();
+
+    private static ExecutorService ioExecutor = null;
+
     public ScanDataManager(String name) {
         super(name);
     }
@@ -39,24 +50,125 @@ public class ScanDataManager extends AbstractWorldData<ScanDataManager> {
     public void clear() {
         scans.clear();
         scanData.clear();
+        loadedSizes.clear();
+        loadedBytes = 0;
+        loading.clear();
         lastId = 0;
     }
 
-    public void save(int scanId) {
+    private static File getScanFile(int scanId) {
         World world = DimensionManager.getWorld(0);
         File dataDir = new File(((WorldServer) world).getChunkSaveLocation(), "rftoolsscans");
         dataDir.mkdirs();
-        File file = new File(dataDir, "scan" + scanId);
+        return new File(dataDir, "scan" + scanId);
+    }
+
+    private static synchronized ExecutorService getIoExecutor() {
+        if (ioExecutor == null) {
+            // A single thread so that reads and writes of the same file happen in the order they were asked
+            ioExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "RFTools Scan IO");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return ioExecutor;
+    }
+
+    /**
+     * Wait until all scan files are written
+     */
+    public static void waitForIO() {
+        ExecutorService executor;
+        synchronized (ScanDataManager.class) {
+            executor = ioExecutor;
+            ioExecutor = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    Logging.logError("Timeout while writing scan files!");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Save a scan. The data is converted to NBT right away but compressing and writing
+     * the file happens in the background. The returned future is done when the file is written
+     */
+    public Future<?> save(int scanId) {
+        File file = getScanFile(scanId);
         Scan scan = getOrCreateScan(scanId);
         NBTTagCompound tc = new NBTTagCompound();
         scan.writeToNBTExternal(tc);
-        try(DataOutputStream dataoutputstream = new DataOutputStream(new FileOutputStream(file))) {
-            CompressedStreamTools.writeCompressed(tc, dataoutputstream);
-        } catch (IOException e) {
-            throw new UncheckedIOException("Error writing to file 'scan" + scan + "'!", e);
-        }
+        // A read that is still in progress would give the old data
+        loading.remove(scanId);
+        touch(scanId, scan);
+        World world = DimensionManager.getWorld(0);
         world.setData(SCANDATA_NETWORK_NAME, this);
         markDirty();
+        return getIoExecutor().submit(() -> {
+            try(DataOutputStream dataoutputstream = new DataOutputStream(new FileOutputStream(file))) {
+                CompressedStreamTools.writeCompressed(tc, dataoutputstream);
+            } catch (IOException e) {
+                Logging.logError("Error writing to file 'scan" + scanId + "': " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Start reading the data of a scan in the background (if it is not already in memory).
+     * Poll the returned future to know when loadScan() can be called without waiting for the disk
+     */
+    public Future<?> requestLoad(int id) {
+        Scan scan = scans.get(id);
+        if (scan != null && scan.getDataInt() != null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return loading.computeIfAbsent(id, key -> {
+            File file = getScanFile(key);
+            return CompletableFuture.supplyAsync(() -> {
+                if (!file.exists()) {
+                    return null;
+                }
+                try(DataInputStream datainputstream = new DataInputStream(new FileInputStream(file))) {
+                    return CompressedStreamTools.readCompressed(datainputstream);
+                } catch (IOException e) {
+                    Logging.log("Error reading scan file for id: " + key);
+                    return null;
+                }
+            }, getIoExecutor());
+        });
+    }
+
+    // Remember that the data of this scan was used and remove the data of the least recently
+    // used scans if there is too much data in memory
+    private void touch(int id, Scan scan) {
+        Integer old = loadedSizes.remove(id);
+        if (old != null) {
+            loadedBytes -= old;
+        }
+        int size = scan.getRledata().length;
+        loadedSizes.put(id, size);
+        loadedBytes += size;
+
+        long max = ScannerConfiguration.scanCacheSize * 1024L;
+        Iterator<Map.Entry<Integer, Integer>> iterator = loadedSizes.entrySet().iterator();
+        while (loadedBytes > max && iterator.hasNext()) {
+            Map.Entry<Integer, Integer> entry = iterator.next();
+            if (entry.getKey() != id) {
+                Scan s = scans.get(entry.getKey());
+                if (s != null) {
+                    s.unloadData();
+                }
+                loadedBytes -= entry.getValue();
+                iterator.remove();
+            }
+        }
     }
 
     public ScanExtraData getExtraData(int id) {
@@ -88,29 +200,34 @@ public class ScanDataManager extends AbstractWorldData<ScanDataManager> {
         return scan;
     }
 
+    /**
+     * Get a scan with its data. If the data is not in memory this waits until it is read from disk
+     */
     @Nonnull
     public Scan loadScan(int id) {
-        World world = DimensionManager.getWorld(0);
-        Scan scan = scans.get(id);
-        if (scan == null || scan.getDataInt() == null) {
-            if (scan == null) {
-                scan = new Scan();
+        Scan scan = getOrCreateScan(id);
+        if (scan.getDataInt() == null) {
+            Future<?> future = requestLoad(id);
+            NBTTagCompound tag = null;
+            if (future instanceof CompletableFuture) {
+                tag = (NBTTagCompound) ((CompletableFuture<?>) future).join();
             }
-            File dataDir = new File(((WorldServer) world).getChunkSaveLocation(), "rftoolsscans");
-            dataDir.mkdirs();
-            File file = new File(dataDir, "scan" + id);
-            if (file.exists()) {
-                try(DataInputStream datainputstream = new DataInputStream(new FileInputStream(file))) {
-                    NBTTagCompound tag = CompressedStreamTools.readCompressed(datainputstream);
-                    scan.readFromNBTExternal(tag);
-                } catch (IOException e) {
-                    Logging.log("Error reading scan file for id: " + id);
-                }
+            loading.remove(id);
+            if (tag != null && scan.getDataInt() == null) {
+                scan.readFromNBTExternal(tag);
             }
         }
+        if (scan.getDataInt() != null) {
+            touch(id, scan);
+        }
         return scan;
     }
 
+    public int getDirtyCounter(int id) {
+        Scan scan = scans.get(id);
+        return scan == null ? 0 : scan.getDirtyCounter();
+    }
+
     public static void listScans(ICommandSender sender) {
         ScanDataManager scans = getScans();
         for (Map.Entry<Integer, Scan> entry : scans.scans.entrySet()) {
@@ -3,116 +3,276 @@ package mcjty.rftools.shapes;
 import mcjty.rftools.blocks.shaper.ScannerConfiguration;
 import mcjty.rftools.items.builder.ShapeCardItem;
 import mcjty.rftools.network.RFToolsMessages;
-import mcjty.rftools.varia.RLE;
+import mcjty.rftools.varia.VarRLE;
+import net.minecraft.command.ICommandSender;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.util.text.TextFormatting;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
-/// Server side handling for shape data
+/// Server side handling for shape data. The planes of a shape are calculated on a small pool
+/// of worker threads. The finished packets are sent from the main thread (handleWork)
 public class ShapeDataManagerServer {
 
-
-    private static class WorkUnit {
+    /**
+     * All the work for one shape request. The formula is set up on the main thread (so it
+     * contains its own copy of the card and scan data) and after that it is only used by
+     * the single worker thread that runs this job.
+     */
+    private static class ShapeJob implements Runnable {
+        private final ShapeID shapeID;
+        private final ItemStack stack;
+        private final IFormula formula;
+        private final int[] planes;
         private final List<EntityPlayerMP> players = new ArrayList<>();
-        private ItemStack stack;
-        private int offsetY;
-        private IFormula formula;
+        private final long submitTime = System.nanoTime();
+        private volatile boolean cancelled = false;
+        private volatile boolean finished = false;
+
+        // Number of planes that are done. Guarded by 'this' together with 'players'
+        private int done = 0;
 
-        public WorkUnit(ItemStack stack, int offsetY, IFormula formula, EntityPlayerMP player) {
+        public ShapeJob(ShapeID shapeID, ItemStack stack, IFormula formula, int[] planes, EntityPlayerMP player) {
+            this.shapeID = shapeID;
             this.stack = stack;
-            this.offsetY = offsetY;
             this.formula = formula;
+            this.planes = planes;
             this.players.add(player);
         }
 
-        public void update(ItemStack stack, int offsetY, IFormula formula, EntityPlayerMP player) {
-            this.stack = stack;
-            this.offsetY = offsetY;
-            this.formula = formula;
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                boolean solid = ShapeCardItem.isSolid(stack);
+                BlockPos dimension = ShapeCardItem.getDimension(stack);
+                for (int offsetY : planes) {
+                    if (cancelled) {
+                        return;
+                    }
+                    VarRLE positions = new VarRLE();
+                    StatePalette statePalette = new StatePalette();
+                    int cnt = ShapeCardItem.getRenderPositions(stack, solid, positions, statePalette, formula, offsetY);
+                    PacketReturnShapeData packet = new PacketReturnShapeData(shapeID, positions, statePalette, dimension, cnt, offsetY, "");
+                    List<EntityPlayerMP> receivers;
+                    synchronized (this) {
+                        receivers = new ArrayList<>(players);
+                        done++;
+                    }
+                    results.add(new Result(this, packet, receivers, cnt > 0 ? dimension.getX() * dimension.getZ() : 0));
+                }
+            } finally {
+                finished = true;
+                if (!cancelled) {
+                    recordLatency(System.nanoTime() - submitTime, System.nanoTime() - start);
+                }
+            }
+        }
+
+        public boolean isSameCard(ItemStack other) {
+            return ItemStack.areItemStacksEqual(stack, other);
+        }
+
+        /**
+         * Add a player to this job. Returns the number of planes that were already
+         * done without this player.
+         */
+        public synchronized int addPlayer(EntityPlayerMP player) {
             if (!players.contains(player)) {
                 players.add(player);
+                return done;
             }
+            return 0;
         }
 
-        public List<EntityPlayerMP> getPlayers() {
-            return players;
+        public synchronized boolean removeGonePlayers() {
+            players.removeIf(EntityPlayerMP::hasDisconnected);
+            return players.isEmpty();
         }
+    }
+
+    private static class Result {
+        private final ShapeJob job;
+        private final PacketReturnShapeData packet;
+        private final List<EntityPlayerMP> players;
+        private final int surface;
 
-        public ItemStack getStack() {
-            return stack;
+        public Result(ShapeJob job, PacketReturnShapeData packet, List<EntityPlayerMP> players, int surface) {
+            this.job = job;
+            this.packet = packet;
+            this.players = players;
+            this.surface = surface;
         }
+    }
+
+    private static ThreadPoolExecutor executor = null;
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    // Results from the workers that still have to be sent (on the main thread)
+    private static final Queue<Result> results = new ConcurrentLinkedQueue<>();
 
-        public int getOffsetY() {
-            return offsetY;
+    // The running job for every shape. Only accessed from the main thread
+    private static final Map<ShapeID, ShapeJob> jobs = new HashMap<>();
+    // Jobs that only send the planes a player missed because it joined a running job
+    private static final List<ShapeJob> catchupJobs = new ArrayList<>();
+
+    // Requests that can only start when a scan is read from disk
+    private static final List<Waiting> waiting = new ArrayList<>();
+
+    private static class Waiting {
+        private final Future<?> future;
+        private final Runnable runnable;
+
+        public Waiting(Future<?> future, Runnable runnable) {
+            this.future = future;
+            this.runnable = runnable;
         }
+    }
+
+    // Statistics
+    private static final Object statsLock = new Object();
+    private static int finishedJobs = 0;
+    private static long totalLatency = 0;
+    private static long lastLatency = 0;
+    private static long lastCompute = 0;
+    private static long maxLatency = 0;
 
-        public IFormula getFormula() {
-            return formula;
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            int threads = Math.max(1, ScannerConfiguration.shapeWorkerThreads);
+            executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "RFTools Shape Worker " + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
         }
+        return executor;
     }
 
-    private static class WorkQueue {
-        private final ArrayDeque<WorkUnit> workQueue = new ArrayDeque<>();
-        private final Map<Integer, WorkUnit> workingOn = new HashMap<>();
+    private static void recordLatency(long latency, long compute) {
+        synchronized (statsLock) {
+            finishedJobs++;
+            totalLatency += latency;
+            lastLatency = latency;
+            lastCompute = compute;
+            maxLatency = Math.max(maxLatency, latency);
+        }
     }
 
-    // Server-side
-    private static final Map<ShapeID, WorkQueue> workQueues = new HashMap<>();
+    public static void pushWork(ShapeID shapeID, ItemStack stack, IFormula formula, int dy, EntityPlayerMP player) {
+        int[] planes = new int[dy];
+        for (int y = 0 ; y < dy ; y++) {
+            planes[y] = y;
+        }
 
-    public static void pushWork(ShapeID shapeID, ItemStack stack, int offsetY, IFormula formula, EntityPlayerMP player) {
-        WorkQueue queue = workQueues.get(shapeID);
-        if (queue == null) {
-            queue = new WorkQueue();
-            workQueues.put(shapeID, queue);
+        ShapeJob job = jobs.get(shapeID);
+        if (job != null && !job.cancelled && !job.finished && job.isSameCard(stack)) {
+            // Someone else is already working on this shape. Join that job and only calculate
+            // the planes that were already done before we joined
+            int done = job.addPlayer(player);
+            if (done > 0) {
+                ShapeJob catchup = new ShapeJob(shapeID, stack, formula, Arrays.copyOf(planes, Math.min(done, dy)), player);
+                catchupJobs.add(catchup);
+                getExecutor().execute(catchup);
+            }
+            return;
         }
-        if (queue.workingOn.containsKey(offsetY)) {
-            queue.workingOn.get(offsetY).update(stack, offsetY, formula, player);
-        } else {
-            WorkUnit unit = new WorkUnit(stack, offsetY, formula, player);
-            queue.workQueue.addLast(unit);
-            queue.workingOn.put(offsetY, unit);
+
+        if (job != null) {
+            // The card changed (or the job is done). Whatever the old job is still doing is no longer needed
+            job.cancelled = true;
         }
+        job = new ShapeJob(shapeID, stack, formula, planes, player);
+        jobs.put(shapeID, job);
+        getExecutor().execute(job);
+    }
+
+    /**
+     * Run something on the main thread as soon as the future is done
+     */
+    public static void runWhenDone(Future<?> future, Runnable runnable) {
+        waiting.add(new Waiting(future, runnable));
     }
 
     public static void handleWork() {
-        Set<ShapeID> toRemove = new HashSet<>();
-        for (Map.Entry<ShapeID, WorkQueue> entry : workQueues.entrySet()) {
-            ShapeID shapeID = entry.getKey();
-            WorkQueue queue = entry.getValue();
-
-            int pertick = ScannerConfiguration.planeSurfacePerTick;
-            while (!queue.workQueue.isEmpty()) {
-                WorkUnit unit = queue.workQueue.removeFirst();
-                queue.workingOn.remove(unit.getOffsetY());
-
-                ItemStack card = unit.getStack();
-                boolean solid = ShapeCardItem.isSolid(card);
-                BlockPos dimension = ShapeCardItem.getDimension(card);
-
-                RLE positions = new RLE();
-                StatePalette statePalette = new StatePalette();
-                int cnt = ShapeCardItem.getRenderPositions(card, solid, positions, statePalette, unit.getFormula(), unit.getOffsetY());
-
-                for (EntityPlayerMP player : unit.getPlayers()) {
-                    RFToolsMessages.INSTANCE.sendTo(new PacketReturnShapeData(shapeID, positions, statePalette, dimension, cnt, unit.getOffsetY(), ""), player);
-                }
-                if (cnt > 0) {
-                    pertick -= dimension.getX() * dimension.getZ();
-                    if (pertick <= 0) {
-                        break;
-                    }
-                }
+        if (!waiting.isEmpty()) {
+            List<Waiting> ready = new ArrayList<>();
+            waiting.removeIf(w -> w.future.isDone() && ready.add(w));
+            for (Waiting w : ready) {
+                w.runnable.run();
+            }
+        }
+
+        // Forget finished jobs and cancel the jobs for which all players are gone
+        jobs.values().removeIf(ShapeDataManagerServer::cleanupJob);
+        catchupJobs.removeIf(ShapeDataManagerServer::cleanupJob);
+
+        int pertick = ScannerConfiguration.planeSurfacePerTick;
+        while (pertick > 0) {
+            Result result = results.poll();
+            if (result == null) {
+                break;
             }
-            if (queue.workQueue.isEmpty()) {
-                toRemove.add(shapeID);
+            if (result.job.cancelled) {
+                // Data for an old version of the card
+                continue;
             }
+            for (EntityPlayerMP player : result.players) {
+                if (!player.hasDisconnected()) {
+                    RFToolsMessages.INSTANCE.sendTo(result.packet, player);
+                }
+            }
+            pertick -= result.surface;
+        }
+    }
+
+    private static boolean cleanupJob(ShapeJob job) {
+        if (job.finished || job.cancelled) {
+            return true;
+        }
+        if (job.removeGonePlayers()) {
+            job.cancelled = true;
+            return true;
         }
-        for (ShapeID id : toRemove) {
-            workQueues.remove(id);
+        return false;
+    }
+
+    public static void cancelAll() {
+        for (ShapeJob job : jobs.values()) {
+            job.cancelled = true;
+        }
+        for (ShapeJob job : catchupJobs) {
+            job.cancelled = true;
         }
+        jobs.clear();
+        catchupJobs.clear();
+        waiting.clear();
+        results.clear();
+    }
 
+    public static void listWork(ICommandSender sender) {
+        int queued = executor == null ? 0 : executor.getQueue().size();
+        int active = executor == null ? 0 : executor.getActiveCount();
+        sender.sendMessage(new TextComponentString(
+                TextFormatting.YELLOW + "Shape jobs: " + TextFormatting.WHITE + active + " running, " + queued + " queued" +
+                        TextFormatting.YELLOW + "   Planes waiting to be sent: " + TextFormatting.WHITE + results.size()));
+        synchronized (statsLock) {
+            if (finishedJobs > 0) {
+                sender.sendMessage(new TextComponentString(
+                        TextFormatting.YELLOW + "Finished: " + TextFormatting.WHITE + finishedJobs +
+                                TextFormatting.YELLOW + "   Latency (ms) last: " + TextFormatting.WHITE + lastLatency / 1000000 +
+                                " (compute " + lastCompute / 1000000 + ")" +
+                                TextFormatting.YELLOW + "   avg: " + TextFormatting.WHITE + totalLatency / finishedJobs / 1000000 +
+                                TextFormatting.YELLOW + "   max: " + TextFormatting.WHITE + maxLatency / 1000000));
+            }
+        }
     }
 
 }
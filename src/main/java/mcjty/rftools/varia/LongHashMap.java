@@ -0,0 +1,128 @@
+package mcjty.rftools.varia;
+
+import java.util.Arrays;
+
+/**
+ * A hash map with primitive long keys so that lookups don't have to box the key.
+ * Open addressing with linear probing. Null values are not supported (a null value
+ * marks an empty slot).
+ */
+public class LongHashMap<V> {
+
+    private long[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    public LongHashMap() {
+        allocate(16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * Pack a dimension and chunk coordinates in one key. Only the low 20 bits of the
+     * dimension and 22 bits of the chunk coordinates are used so very big values can
+     * share a key with other chunks: users have to check the real position of what
+     * they find with this key.
+     */
+    public static long chunkKey(int dimension, int chunkX, int chunkZ) {
+        return ((long) (dimension & 0xfffff) << 44) | ((long) (chunkX & 0x3fffff) << 22) | (chunkZ & 0x3fffff);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (keys.length > 16) {
+            allocate(16);
+        } else {
+            Arrays.fill(values, null);
+        }
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[findSlot(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return values[findSlot(key)] != null;
+    }
+
+    public void put(long key, V value) {
+        if (value == null) {
+            remove(key);
+            return;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+        int slot = findSlot(key);
+        if (values[slot] == null) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = findSlot(key);
+        Object old = values[slot];
+        if (old == null) {
+            return null;
+        }
+        // Backward shift deletion so that no tombstones are needed
+        int mask = keys.length - 1;
+        int hole = slot;
+        int i = (slot + 1) & mask;
+        while (values[i] != null) {
+            int home = hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        values[hole] = null;
+        size--;
+        return (V) old;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0 ; i < oldKeys.length ; i++) {
+            if (oldValues[i] != null) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package mcjty.rftools.varia;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * A set of coordinates with an int value (usually an index in a palette of block states,
+ * -1 if there is none) for every coordinate. Used instead of a Map<BlockPos, IBlockState>
+ * for big shapes (shields, builder). Coordinates are packed in a long (21 bits per axis so
+ * they should be relative to some origin) and kept in an open addressing hash table without
+ * any objects per entry.
+ *
+ * Iterate with forEach() or with a slot loop:
+ *   for (int i = 0 ; i < map.getSlots() ; i++) if (map.isUsed(i)) { ... }
+ */
+public class PositionMap {
+
+    public interface Visitor {
+        void visit(int x, int y, int z, int value);
+    }
+
+    private static final long EMPTY = -1L;      // Packed coordinates are never negative
+    private static final int BITS = 21;
+    private static final long MASK = (1L << BITS) - 1;
+    private static final int OFFSET = 1 << (BITS - 1);
+
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    public PositionMap() {
+        allocate(16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((x + OFFSET) & MASK) << (BITS * 2) | ((y + OFFSET) & MASK) << BITS | ((z + OFFSET) & MASK);
+    }
+
+    public static int unpackX(long key) {
+        return (int) ((key >>> (BITS * 2)) & MASK) - OFFSET;
+    }
+
+    public static int unpackY(long key) {
+        return (int) ((key >>> BITS) & MASK) - OFFSET;
+    }
+
+    public static int unpackZ(long key) {
+        return (int) (key & MASK) - OFFSET;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (keys.length > 16) {
+            allocate(16);
+        } else {
+            Arrays.fill(keys, EMPTY);
+        }
+        size = 0;
+    }
+
+    /**
+     * Add a coordinate without a value. Returns false if it was already there
+     */
+    public boolean add(int x, int y, int z) {
+        if (contains(x, y, z)) {
+            return false;
+        }
+        add(x, y, z, -1);
+        return true;
+    }
+
+    /**
+     * Add a coordinate (or replace the value of a coordinate that is already there)
+     */
+    public void add(int x, int y, int z, int value) {
+        if ((size + 1) * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+        long key = pack(x, y, z);
+        int slot = findSlot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Return the slot for a packed coordinate (as returned by getKeysBySection()) or -1
+     * if it is not in this set (anymore)
+     */
+    public int findKey(long key) {
+        int slot = findSlot(key);
+        return keys[slot] == EMPTY ? -1 : slot;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return keys[findSlot(pack(x, y, z))] != EMPTY;
+    }
+
+    /**
+     * Return the value for this coordinate or -1 if it is not in this map
+     */
+    public int getValue(int x, int y, int z) {
+        int slot = findSlot(pack(x, y, z));
+        return keys[slot] == EMPTY ? -1 : values[slot];
+    }
+
+    public boolean remove(int x, int y, int z) {
+        int slot = findSlot(pack(x, y, z));
+        if (keys[slot] == EMPTY) {
+            return false;
+        }
+        // Backward shift deletion so that no tombstones are needed
+        int mask = keys.length - 1;
+        int hole = slot;
+        int i = (slot + 1) & mask;
+        while (keys[i] != EMPTY) {
+            int home = hash(keys[i]) & mask;
+            // Move the entry at i into the hole if its home slot is not in (hole, i]
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        size--;
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0 ; i < oldKeys.length ; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    public int getSlots() {
+        return keys.length;
+    }
+
+    public boolean isUsed(int slot) {
+        return keys[slot] != EMPTY;
+    }
+
+    public int getX(int slot) {
+        return unpackX(keys[slot]);
+    }
+
+    public int getY(int slot) {
+        return unpackY(keys[slot]);
+    }
+
+    public int getZ(int slot) {
+        return unpackZ(keys[slot]);
+    }
+
+    public int getValue(int slot) {
+        return values[slot];
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0 ; i < keys.length ; i++) {
+            if (keys[i] != EMPTY) {
+                long key = keys[i];
+                visitor.visit(unpackX(key), unpackY(key), unpackZ(key), values[i]);
+            }
+        }
+    }
+
+    /**
+     * Return the packed coordinates sorted so that all blocks in the same 16x16x16 chunk
+     * section (when the coordinates are relative to 'origin') are next to each other. Sections are ordered by
+     * chunk and then by height. Use unpackX/Y/Z() to get the coordinates back.
+     */
+    public long[] getKeysBySection(BlockPos origin) {
+        long[] order = new long[size];
+        int[] slotOf = new int[size];
+        int n = 0;
+        for (int i = 0 ; i < keys.length ; i++) {
+            if (keys[i] != EMPTY) {
+                slotOf[n] = i;
+                int x = origin.getX() + unpackX(keys[i]);
+                int y = origin.getY() + unpackY(keys[i]);
+                int z = origin.getZ() + unpackZ(keys[i]);
+                // Sort key: chunk x, chunk z, section y and then the index in the table (to make it unique)
+                long sectionKey = (((long) ((x >> 4) & 0xfff)) << 20) | (((long) ((z >> 4) & 0xfff)) << 8) | ((y >> 4) & 0xff);
+                order[n] = (sectionKey << 28) | n;
+                n++;
+            }
+        }
+        Arrays.sort(order);
+        long[] result = new long[n];
+        for (int i = 0 ; i < n ; i++) {
+            result[i] = keys[slotOf[(int) (order[i] & ((1 << 28) - 1))]];
+        }
+        return result;
+    }
+
+    /**
+     * Compact form for NBT: the packed coordinates are sorted and written as variable length
+     * deltas. The values are returned separately (see getSortedValues()) in the same order.
+     */
+    public byte[] toBytes() {
+        long[] sorted = getSortedKeys();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sorted.length * 2);
+        long last = 0;
+        for (long key : sorted) {
+            long delta = key - last;
+            last = key;
+            while ((delta & ~0x7fL) != 0) {
+                out.write((int) ((delta & 0x7f) | 0x80));
+                delta >>>= 7;
+            }
+            out.write((int) delta);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The values in the same order as the coordinates in toBytes(). Returns null if no
+     * coordinate has a value
+     */
+    public int[] getSortedValues() {
+        long[] sorted = getSortedKeys();
+        int[] result = new int[sorted.length];
+        boolean hasValues = false;
+        for (int i = 0 ; i < sorted.length ; i++) {
+            result[i] = values[findSlot(sorted[i])];
+            if (result[i] != -1) {
+                hasValues = true;
+            }
+        }
+        return hasValues ? result : null;
+    }
+
+    private long[] getSortedKeys() {
+        long[] sorted = new long[size];
+        int n = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                sorted[n++] = key;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Read the form made by toBytes() and getSortedValues()
+     */
+    public void fromBytes(byte[] bytes, int[] sortedValues) {
+        clear();
+        long last = 0;
+        int i = 0;
+        int idx = 0;
+        while (i < bytes.length) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[i++];
+                delta |= ((long) (b & 0x7f)) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0 && i < bytes.length);
+            last += delta;
+            int value = sortedValues == null || idx >= sortedValues.length ? -1 : sortedValues[idx];
+            add(unpackX(last), unpackY(last), unpackZ(last), value);
+            idx++;
+        }
+    }
+}
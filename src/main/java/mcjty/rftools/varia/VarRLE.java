@@ -0,0 +1,178 @@
+package mcjty.rftools.varia;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.Arrays;
+
+/**
+ * Run length encoding where both the length of a run and its value are written as a
+ * variable length int (7 bits per byte). Runs are not limited in length so a long run of
+ * air only costs a few bytes. Values are written directly into a ByteBuf and are decoded
+ * lazily (one value or one row at a time).
+ */
+public class VarRLE {
+
+    private final ByteBuf buf;
+
+    // Writing
+    private int cnt = 0;
+    private int prev = -1;
+
+    // Reading
+    private int readcnt = 0;
+    private int readvalue = 0;
+
+    public VarRLE() {
+        this(Unpooled.buffer(64));
+    }
+
+    public VarRLE(ByteBuf buf) {
+        this.buf = buf;
+    }
+
+    public static VarRLE wrap(byte[] data) {
+        return new VarRLE(Unpooled.wrappedBuffer(data));
+    }
+
+    /**
+     * Convert data in the old format (pairs of a count and a value, both one byte)
+     */
+    public static VarRLE fromLegacy(byte[] data) {
+        VarRLE rle = new VarRLE(Unpooled.buffer(data.length));
+        for (int i = 0 ; i + 1 < data.length ; i += 2) {
+            rle.addRun(data[i + 1] & 0xff, data[i] & 0xff);
+        }
+        rle.flush();
+        return rle;
+    }
+
+    public void add(int c) {
+        if (prev == c) {
+            cnt++;
+        } else {
+            flush();
+            prev = c;
+            cnt = 1;
+        }
+    }
+
+    /**
+     * Add 'count' times the same value
+     */
+    public void addRun(int c, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (prev != c) {
+            flush();
+            prev = c;
+        }
+        cnt += count;
+    }
+
+    private void flush() {
+        if (cnt > 0) {
+            writeVarInt(buf, cnt);
+            writeVarInt(buf, prev);
+        }
+        prev = -1;
+        cnt = 0;
+    }
+
+    /**
+     * Finish writing and return the buffer with the encoded data (from index 0 to the writer index)
+     */
+    public ByteBuf getBuffer() {
+        flush();
+        return buf;
+    }
+
+    public int getSize() {
+        return getBuffer().writerIndex();
+    }
+
+    public byte[] toByteArray() {
+        ByteBuf b = getBuffer();
+        byte[] data = new byte[b.writerIndex()];
+        b.getBytes(0, data);
+        return data;
+    }
+
+    public void reset() {
+        buf.readerIndex(0);
+        readcnt = 0;
+    }
+
+    private boolean nextRun() {
+        while (readcnt == 0) {
+            if (!buf.isReadable()) {
+                return false;
+            }
+            readcnt = readVarInt(buf);
+            readvalue = readVarInt(buf);
+        }
+        return true;
+    }
+
+    /**
+     * Read the next value. Returns 0 if there is no more data
+     */
+    public int read() {
+        if (!nextRun()) {
+            return 0;
+        }
+        readcnt--;
+        return readvalue;
+    }
+
+    /**
+     * Read the next 'len' values in 'out'. Values after the end of the data are 0
+     */
+    public void readRow(int[] out, int len) {
+        int i = 0;
+        while (i < len && nextRun()) {
+            int n = Math.min(readcnt, len - i);
+            Arrays.fill(out, i, i + n, readvalue);
+            readcnt -= n;
+            i += n;
+        }
+        Arrays.fill(out, i, len, 0);
+    }
+
+    /**
+     * Read the next 'len' values in 'out' starting at 'offset'. A value equal to 'empty'
+     * is stored as 0. Values after the end of the data are 0
+     */
+    public void readRow(byte[] out, int offset, int len, int empty) {
+        int i = offset;
+        int end = offset + len;
+        while (i < end && nextRun()) {
+            int n = Math.min(readcnt, end - i);
+            Arrays.fill(out, i, i + n, (byte) (readvalue == empty ? 0 : readvalue));
+            readcnt -= n;
+            i += n;
+        }
+        Arrays.fill(out, i, end, (byte) 0);
+    }
+
+    public static void writeVarInt(ByteBuf buf, int value) {
+        while ((value & ~0x7f) != 0) {
+            buf.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    public static int readVarInt(ByteBuf buf) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.readByte();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        return value;
+    }
+}